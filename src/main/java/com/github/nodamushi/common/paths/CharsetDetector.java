@@ -0,0 +1,204 @@
+package com.github.nodamushi.common.paths;
+
+import static java.nio.charset.StandardCharsets.*;
+
+import java.nio.charset.Charset;
+
+/**
+ * guess the charset of the first bytes of a text.
+ * <ol>
+ * <li>BOM:UTF-32BE/LE,UTF-8,UTF-16BE/LE</li>
+ * <li>the zero bytes of ASCII in UTF-16 without the BOM</li>
+ * <li>the escape sequences of ISO-2022-JP</li>
+ * <li>only ASCII:the default charset</li>
+ * <li>valid UTF-8</li>
+ * <li>Shift_JIS or EUC-JP,whichever has fewer invalid bytes and more double byte characters</li>
+ * </ol>
+ * @author nodamushi
+ * @since 1.1.0
+ */
+final class CharsetDetector{
+  /** the number of the bytes read to detect. */
+  static final int SNIFF = 8192;
+
+  static final Charset UTF_32BE = Charset.forName("UTF-32BE");
+  static final Charset UTF_32LE = Charset.forName("UTF-32LE");
+
+  /**
+   * @return the charset of the BOM,or null.
+   */
+  static Charset bom(byte[] b,int len){
+    int b0 = len>0?b[0]&0xFF:-1,b1 = len>1?b[1]&0xFF:-1,b2 = len>2?b[2]&0xFF:-1,b3 = len>3?b[3]&0xFF:-1;
+    if(b0==0 && b1==0 && b2==0xFE && b3==0xFF) return UTF_32BE;
+    if(b0==0xFF && b1==0xFE && b2==0 && b3==0) return UTF_32LE;
+    if(b0==0xEF && b1==0xBB && b2==0xBF) return UTF_8;
+    if(b0==0xFE && b1==0xFF) return UTF_16BE;
+    if(b0==0xFF && b1==0xFE) return UTF_16LE;
+    return null;
+  }
+
+  /**
+   * @param bom the result of {@link #bom(byte[], int)}
+   * @return length of the BOM
+   */
+  static int bomLength(Charset bom){
+    return bom==null?0:bom.equals(UTF_8)?3:bom.equals(UTF_16BE) || bom.equals(UTF_16LE)?2:4;
+  }
+
+  /**
+   * @param b the first bytes
+   * @param len the number of the bytes
+   * @param eof true if <code>b</code> is the whole text.
+   * @param defaultCharset the charset of ASCII text or undetectable text.
+   * @return charset
+   */
+  static Charset detect(byte[] b,int len,boolean eof,Charset defaultCharset){
+    Charset cs = bom(b,len);
+    if(cs != null){
+      return cs;
+    }
+    cs = utf16(b,len);
+    if(cs != null){
+      return cs;
+    }
+    boolean ascii = true;
+    for(int i=0;i<len;i++){
+      if(b[i] < 0){
+        ascii = false;
+        break;
+      }
+      if(b[i]==0x1B && i+2 < len && b[i+1]=='$' && (b[i+2]=='B' || b[i+2]=='@')){
+        return Charset.forName("ISO-2022-JP");
+      }
+    }
+    if(ascii){
+      return defaultCharset;
+    }
+    if(utf8(b,len,eof)){
+      return UTF_8;
+    }
+    int sjis = sjis(b,len,eof),euc = euc(b,len,eof);
+    if(sjis < 0 && euc < 0){
+      return defaultCharset;
+    }
+    return euc > sjis?Charset.forName("EUC-JP"):Charset.forName("Shift_JIS");
+  }
+
+  /**
+   * ASCII in UTF-16:one of 2 bytes is 0.
+   */
+  private static Charset utf16(byte[] b,int len){
+    if(len < 4){
+      return null;
+    }
+    int even = 0,odd = 0;
+    for(int i=0;i+1<len;i+=2){
+      if(b[i]==0) even++;
+      if(b[i+1]==0) odd++;
+    }
+    int units = len/2;
+    if(even*10 >= units*4 && odd*20 < units){
+      return UTF_16BE;
+    }
+    if(odd*10 >= units*4 && even*20 < units){
+      return UTF_16LE;
+    }
+    return null;
+  }
+
+  /**
+   * strict UTF-8:no overlong forms,no surrogates,up to U+10FFFF.
+   * A sequence cut by the end of <code>b</code> is valid when not <code>eof</code>.
+   */
+  private static boolean utf8(byte[] b,int len,boolean eof){
+    int i = 0;
+    while(i < len){
+      int c = b[i]&0xFF;
+      int n,min = 0x80,max = 0xBF;
+      if(c < 0x80){
+        i++;
+        continue;
+      }else if(c >= 0xC2 && c <= 0xDF){
+        n = 1;
+      }else if(c >= 0xE0 && c <= 0xEF){
+        n = 2;
+        if(c == 0xE0) min = 0xA0;
+        if(c == 0xED) max = 0x9F;
+      }else if(c >= 0xF0 && c <= 0xF4){
+        n = 3;
+        if(c == 0xF0) min = 0x90;
+        if(c == 0xF4) max = 0x8F;
+      }else{
+        return false;
+      }
+      for(int k=1;k<=n;k++){
+        if(i+k >= len){
+          return !eof;
+        }
+        int t = b[i+k]&0xFF;
+        if(k == 1?(t < min || t > max):(t < 0x80 || t > 0xBF)){
+          return false;
+        }
+      }
+      i += n+1;
+    }
+    return true;
+  }
+
+  /**
+   * @return score of Shift_JIS:2 per double byte character,1 more for hiragana and katakana.-1 if invalid.
+   */
+  private static int sjis(byte[] b,int len,boolean eof){
+    int score = 0;
+    for(int i=0;i<len;i++){
+      int c = b[i]&0xFF;
+      if(c < 0x80 || (c >= 0xA1 && c <= 0xDF)){
+        continue;
+      }
+      if((c >= 0x81 && c <= 0x9F) || (c >= 0xE0 && c <= 0xFC)){
+        if(i+1 >= len){
+          return eof?-1:score;
+        }
+        int t = b[++i]&0xFF;
+        if(t < 0x40 || t == 0x7F || t > 0xFC){
+          return -1;
+        }
+        score += c==0x82 || c==0x83?3:2;
+      }else{
+        return -1;
+      }
+    }
+    return score;
+  }
+
+  /**
+   * @return score of EUC-JP:2 per double byte character,1 more for hiragana and katakana.-1 if invalid.
+   */
+  private static int euc(byte[] b,int len,boolean eof){
+    int score = 0;
+    for(int i=0;i<len;i++){
+      int c = b[i]&0xFF;
+      if(c < 0x80){
+        continue;
+      }
+      int n = c==0x8F?2:(c==0x8E || (c >= 0xA1 && c <= 0xFE))?1:-1;
+      if(n < 0){
+        return -1;
+      }
+      for(int k=1;k<=n;k++){
+        if(i+k >= len){
+          return eof?-1:score;
+        }
+        int t = b[i+k]&0xFF;
+        if(t < 0xA1 || t > 0xFE || (c == 0x8E && t > 0xDF)){
+          return -1;
+        }
+      }
+      i += n;
+      score += c==0x8E?0:c==0xA4 || c==0xA5?3:2;
+    }
+    return score;
+  }
+
+  private CharsetDetector(){}
+}
@@ -0,0 +1,215 @@
+package com.github.nodamushi.common.paths;
+
+import static java.nio.charset.StandardCharsets.*;
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.github.nodamushi.common.paths.NPaths.ReadBytes;
+
+/**
+ * bulk reader which reads each file on its own task of {@link Threads#newExecutor(int)}.<br>
+ * {@link #readAll(Iterator, int, Semaphore, Charset, boolean, ReadBytes)} keeps the direct buffers in a pool
+ * of <code>maxConcurrency</code> buffers,because a read in flight holds one buffer.
+ * The buffers are not freed explicitly,because a callback may keep one;they are released by the garbage collector.
+ * @author nodamushi
+ * @since 1.1.0
+ */
+final class ConcurrentReader{
+
+  static Map<Path,byte[]> readAllBytes(Collection<? extends Path> paths,int maxConcurrency)
+      throws IOException{
+    requireNonNull(paths,"paths is null");
+    if(maxConcurrency <= 0){
+      throw new IllegalArgumentException("maxConcurrency <= 0 :"+maxConcurrency);
+    }
+    Semaphore permits = new Semaphore(maxConcurrency);
+    ExecutorService executor = Threads.newExecutor(maxConcurrency);
+    List<Future<byte[]>> futures = new ArrayList<>(paths.size());
+    try{
+      for(Path p:paths){
+        requireNonNull(p,"path is null");
+        // a task is started after it takes a permit,so that no thread waits for a permit.
+        permits.acquire();
+        try{
+          futures.add(executor.submit(()->{
+            try{
+              return Files.readAllBytes(p);
+            }finally{
+              permits.release();
+            }
+          }));
+        }catch(RejectedExecutionException e){
+          permits.release();
+          throw e;
+        }
+      }
+      Map<Path,byte[]> map = new LinkedHashMap<>();
+      int i=0;
+      for(Path p:paths){
+        map.put(p,futures.get(i++).get());
+      }
+      return map;
+    }catch(InterruptedException e){
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("read interrupted");
+    }catch(ExecutionException e){
+      Throwable c = e.getCause();
+      if(c instanceof IOException) throw (IOException)c;
+      if(c instanceof RuntimeException) throw (RuntimeException)c;
+      if(c instanceof Error) throw (Error)c;
+      throw new InterruptedIOException("read interrupted");
+    }finally{
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * read the files of <code>paths</code> into buffers,and call <code>callback</code> on the worker threads.
+   * The calling thread takes a permit of the reads in flight before it takes the next path,
+   * so a lazy stream of paths is not drained ahead of the reads.
+   * A worker takes a permit of <code>fileBudget</code> while the file is open.
+   */
+  static void readAll(Iterator<? extends Path> paths,int maxConcurrency,Semaphore fileBudget,
+      Charset charset,boolean direct,ReadBytes callback)throws IOException{
+    requireNonNull(paths,"paths is null");
+    requireNonNull(callback,"callback is null");
+    if(maxConcurrency <= 0){
+      throw new IllegalArgumentException("maxConcurrency <= 0 :"+maxConcurrency);
+    }
+    Semaphore inFlight = new Semaphore(maxConcurrency);
+    AtomicReference<Throwable> error = new AtomicReference<>();
+    BlockingQueue<ByteBuffer> pool = direct?new ArrayBlockingQueue<>(maxConcurrency):null;
+    ExecutorService executor = Threads.newExecutor(maxConcurrency);
+    try{
+      try{
+        while(error.get() == null && paths.hasNext()){
+          Path p = requireNonNull(paths.next(),"path is null");
+          inFlight.acquire();
+          try{
+            executor.execute(()->{
+              try{
+                if(error.get() == null){
+                  read(p,fileBudget,charset,pool,callback);
+                }
+              }catch(InterruptedException e){
+                error.compareAndSet(null,new InterruptedIOException("read interrupted"));
+              }catch(IOException|RuntimeException|Error e){
+                error.compareAndSet(null,e);
+              }finally{
+                inFlight.release();
+              }
+            });
+          }catch(RejectedExecutionException e){
+            inFlight.release();
+            throw e;
+          }
+        }
+      }catch(UncheckedIOException e){
+        // a stream of the walker
+        error.compareAndSet(null,e.getCause());
+      }catch(RuntimeException|Error e){
+        error.compareAndSet(null,e);
+      }
+      // all reads are done when all permits are returned.
+      inFlight.acquire(maxConcurrency);
+    }catch(InterruptedException e){
+      Thread.currentThread().interrupt();
+      error.compareAndSet(null,new InterruptedIOException("read interrupted"));
+    }finally{
+      executor.shutdownNow();
+    }
+    Throwable e = error.get();
+    if(e != null){
+      if(e instanceof IOException) throw (IOException)e;
+      if(e instanceof RuntimeException) throw (RuntimeException)e;
+      throw (Error)e;
+    }
+  }
+
+  private static void read(Path p,Semaphore fileBudget,Charset charset,BlockingQueue<ByteBuffer> pool,
+      ReadBytes callback)throws IOException,InterruptedException{
+    ByteBuffer buf;
+    if(fileBudget != null){
+      fileBudget.acquire();
+    }
+    try(FileChannel ch = FileChannel.open(p,StandardOpenOption.READ)){
+      long size = ch.size();
+      if(size > Integer.MAX_VALUE-8){
+        throw new OutOfMemoryError("Required array size too large");
+      }
+      buf = pool==null?ByteBuffer.allocate((int)size):take(pool,(int)size);
+      while(buf.hasRemaining() && ch.read(buf) >= 0){}
+    }finally{
+      if(fileBudget != null){
+        fileBudget.release();
+      }
+    }
+    buf.flip();
+    buf.position(bom(buf,charset));
+    try{
+      callback.read(p,buf);
+    }finally{
+      if(pool != null){
+        pool.offer(buf);
+      }
+    }
+  }
+
+  /**
+   * @return a pooled direct buffer of at least <code>size</code> bytes,cleared and limited to <code>size</code>.
+   */
+  private static ByteBuffer take(BlockingQueue<ByteBuffer> pool,int size){
+    ByteBuffer b = pool.poll();
+    if(b == null || b.capacity() < size){
+      b = ByteBuffer.allocateDirect(Math.max(size,8192));
+    }
+    b.clear();
+    b.limit(size);
+    return b;
+  }
+
+  /**
+   * the same BOMs as {@link NPaths#newBufferedReader(java.io.InputStream, Charset)}.
+   * @return length of the BOM
+   */
+  private static int bom(ByteBuffer b,Charset charset){
+    if(charset == null){
+      return 0;
+    }
+    int n = b.remaining();
+    int b0 = n>0?b.get(0)&0xFF:-1,b1 = n>1?b.get(1)&0xFF:-1,b2 = n>2?b.get(2)&0xFF:-1;
+    if(charset.equals(UTF_8)){
+      return b0==0xEF && b1==0xBB && b2==0xBF?3:0;
+    }else if(charset.equals(UTF_16) || charset.equals(UTF_16BE)){
+      return b0==0xFE && b1==0xFF?2:0;
+    }else if(charset.equals(UTF_16LE)){
+      return b0==0xFF && b1==0xFE?2:0;
+    }
+    return 0;
+  }
+
+  private ConcurrentReader(){}
+}
@@ -0,0 +1,159 @@
+package com.github.nodamushi.common.paths;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.github.nodamushi.common.paths.NPaths.Visit;
+
+/**
+ * walker which lists the directories on the tasks of {@link Threads#newExecutor(int)}.
+ * A task is started only after it takes one of <code>maxConcurrency</code> permits,
+ * and a subdirectory found when no permit is left is listed by the current task.
+ * So at most <code>maxConcurrency</code> tasks run at the same time,and the memory of the walk
+ * is proportional to <code>maxConcurrency</code>(and the depth),not to the number of the directories.
+ * @author nodamushi
+ * @since 1.1.0
+ */
+final class ConcurrentWalker{
+  private final Visit v;
+  private final boolean d;
+  private final int m;
+  private final ExecutorService executor;
+  private final Semaphore permits;
+  private final AtomicInteger pending = new AtomicInteger();
+  private final CountDownLatch done = new CountDownLatch(1);
+  private final AtomicReference<Throwable> error = new AtomicReference<>();
+  private volatile boolean terminated;
+
+  private ConcurrentWalker(Visit visit,boolean directoryMode,int directoryMaxDepth,
+      ExecutorService executor,int maxConcurrency){
+    v=requireNonNull(visit);
+    d=directoryMode;
+    m=directoryMaxDepth;
+    this.executor = executor;
+    permits = new Semaphore(maxConcurrency);
+  }
+
+  static void walk(Path start,int directoryMaxDepth,boolean directoryMode,int maxConcurrency,Visit visit)
+      throws IOException{
+    requireNonNull(start,"start is null");
+    requireNonNull(visit);
+    if(maxConcurrency <= 0){
+      throw new IllegalArgumentException("maxConcurrency <= 0 :"+maxConcurrency);
+    }
+    BasicFileAttributes attrs = Files.readAttributes(start,BasicFileAttributes.class,LinkOption.NOFOLLOW_LINKS);
+    if(!attrs.isDirectory()){
+      if(!directoryMode){
+        visit.visit(start,attrs);
+      }
+      return;
+    }
+    if(directoryMode && visit.visit(start,attrs)!=FileVisitResult.CONTINUE){
+      return;
+    }
+    ExecutorService executor = Threads.newExecutor(maxConcurrency);
+    ConcurrentWalker w = new ConcurrentWalker(visit,directoryMode,directoryMaxDepth,executor,maxConcurrency);
+    try{
+      w.permits.acquire();
+      w.submit(start,0);
+      w.done.await();
+    }catch(InterruptedException e){
+      w.terminated = true;
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("walk interrupted");
+    }finally{
+      executor.shutdownNow();
+    }
+    Throwable e = w.error.get();
+    if(e instanceof IOException) throw (IOException)e;
+    if(e instanceof RuntimeException) throw (RuntimeException)e;
+    if(e instanceof Error) throw (Error)e;
+  }
+
+  private boolean descend(int depth){
+    return m < 0 || depth <= m;
+  }
+
+  /**
+   * start a task which lists <code>dir</code>.The caller has taken a permit,and the task releases it.
+   */
+  private void submit(Path dir,int depth){
+    pending.incrementAndGet();
+    try{
+      executor.execute(()->{
+        try{
+          list(dir,depth);
+        }catch(IOException e){
+          fail(e);
+        }catch(DirectoryIteratorException e){
+          fail(e.getCause());
+        }catch(RuntimeException|Error e){
+          fail(e);
+        }finally{
+          permits.release();
+          if(pending.decrementAndGet()==0){
+            done.countDown();
+          }
+        }
+      });
+    }catch(RuntimeException|Error e){
+      permits.release();
+      if(pending.decrementAndGet()==0){
+        done.countDown();
+      }
+      throw e;
+    }
+  }
+
+  private void fail(Throwable e){
+    error.compareAndSet(null,e);
+    terminated = true;
+  }
+
+  private void list(Path dir,int depth)throws IOException{
+    if(terminated){
+      return;
+    }
+    try(DirectoryStream<Path> stream = Files.newDirectoryStream(dir)){
+      for(Path p:stream){
+        if(terminated){
+          break;
+        }
+        BasicFileAttributes attrs = Files.readAttributes(p,BasicFileAttributes.class,LinkOption.NOFOLLOW_LINKS);
+        FileVisitResult ret;
+        if(attrs.isDirectory()){
+          ret = d?v.visit(p,attrs):FileVisitResult.CONTINUE;
+          if(ret==FileVisitResult.CONTINUE && descend(depth+1)){
+            if(permits.tryAcquire()){
+              submit(p,depth+1);
+            }else{
+              list(p,depth+1);
+            }
+          }
+        }else{
+          ret = d?FileVisitResult.CONTINUE:v.visit(p,attrs);
+        }
+        if(ret==FileVisitResult.TERMINATE){
+          terminated = true;
+          break;
+        }else if(ret==FileVisitResult.SKIP_SIBLINGS){
+          break;
+        }
+      }
+    }
+  }
+}
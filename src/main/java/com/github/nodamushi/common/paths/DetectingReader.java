@@ -0,0 +1,36 @@
+package com.github.nodamushi.common.paths;
+
+import java.io.BufferedReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+
+/**
+ * {@link BufferedReader} created by {@link NPaths#newDetectingReader(java.nio.file.Path, Charset, java.nio.file.OpenOption...)}
+ * or {@link NPaths#newDetectingReader(java.io.InputStream, Charset)},which tells the detected charset.
+ * @author nodamushi
+ * @since 1.1.0
+ */
+public final class DetectingReader extends BufferedReader{
+  private final Charset charset;
+  private final boolean bom;
+
+  DetectingReader(Reader in,Charset charset,boolean bom){
+    super(in);
+    this.charset = charset;
+    this.bom = bom;
+  }
+
+  /**
+   * @return the detected charset
+   */
+  public Charset getCharset(){
+    return charset;
+  }
+
+  /**
+   * @return true if the BOM was found and skipped.
+   */
+  public boolean hasBom(){
+    return bom;
+  }
+}
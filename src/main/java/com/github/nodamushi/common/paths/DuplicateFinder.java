@@ -0,0 +1,161 @@
+package com.github.nodamushi.common.paths;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+/**
+ * staged duplicate finder.
+ * <ol>
+ * <li>walk the tree in parallel,and group the files by size.</li>
+ * <li>hash the first and the last blocks of the files in the groups of 2 or more files.</li>
+ * <li>hash all bytes of the files which still collide.</li>
+ * </ol>
+ * A stage drops the groups of only one file,so most files are never read,
+ * and the files which are read are read only in part.
+ * @author nodamushi
+ * @since 1.1.0
+ */
+final class DuplicateFinder{
+  private DuplicateFinder(){}
+
+  static List<List<Path>> find(Path start,int directoryMaxDepth,ForkJoinPool pool)throws IOException{
+    requireNonNull(start,"start is null");
+    ForkJoinPool p = pool==null?ForkJoinPool.commonPool():pool;
+    Map<Long,List<Path>> sizes = new ConcurrentHashMap<>();
+    ParallelWalker.walk(start,directoryMaxDepth,false,p,(file,attrs)->{
+      if(attrs.isRegularFile() && attrs.size() > 0){
+        sizes.computeIfAbsent(attrs.size(),k->Collections.synchronizedList(new ArrayList<>())).add(file);
+      }
+      return FileVisitResult.CONTINUE;
+    });
+    List<Candidate> candidates = new ArrayList<>();
+    for(Map.Entry<Long,List<Path>> e:sizes.entrySet()){
+      if(e.getValue().size() > 1){
+        for(Path f:e.getValue()){
+          candidates.add(new Candidate(f,e.getKey()));
+        }
+      }
+    }
+    // stage 2: first and last blocks
+    List<List<Candidate>> groups = group(p,candidates,c->{
+      c.hash = ByteBuffer.wrap(Hashing.hashEnds(c.path,c.size));
+      return c;
+    });
+    // stage 3: all bytes of the large files
+    List<Candidate> full = new ArrayList<>();
+    List<List<Path>> result = new ArrayList<>();
+    for(List<Candidate> g:groups){
+      if(g.get(0).size <= 2L*Hashing.BLOCK){
+        result.add(paths(g));
+      }else{
+        full.addAll(g);
+      }
+    }
+    for(List<Candidate> g:group(p,full,c->{
+      c.hash = ByteBuffer.wrap(Hashing.hash(c.path));
+      return c;
+    })){
+      result.add(paths(g));
+    }
+    result.sort(Comparator.comparing(g->g.get(0)));
+    return result;
+  }
+
+  private static List<Path> paths(List<Candidate> g){
+    List<Path> list = new ArrayList<>(g.size());
+    for(Candidate c:g){
+      list.add(c.path);
+    }
+    Collections.sort(list);
+    return list;
+  }
+
+  /**
+   * hash the candidates in parallel,and group them by the size and the hash.
+   * @return the groups of 2 or more candidates
+   */
+  private static List<List<Candidate>> group(ForkJoinPool pool,List<Candidate> candidates,Hash hash)
+      throws IOException{
+    if(candidates.isEmpty()){
+      return Collections.emptyList();
+    }
+    Map<Key,List<Candidate>> map;
+    try{
+      map = pool.submit(()->candidates.parallelStream().map(c->{
+        try{
+          return hash.apply(c);
+        }catch(IOException e){
+          throw new UncheckedIOException(e);
+        }
+      }).collect(Collectors.groupingByConcurrent(c->new Key(c.size,c.hash)))).get();
+    }catch(InterruptedException e){
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("interrupted");
+    }catch(ExecutionException e){
+      Throwable c = e.getCause();
+      if(c instanceof UncheckedIOException) throw ((UncheckedIOException)c).getCause();
+      if(c instanceof RuntimeException) throw (RuntimeException)c;
+      if(c instanceof Error) throw (Error)c;
+      throw new IOException(c);
+    }
+    List<List<Candidate>> groups = new ArrayList<>();
+    for(List<Candidate> g:map.values()){
+      if(g.size() > 1){
+        groups.add(g);
+      }
+    }
+    return groups;
+  }
+
+  @FunctionalInterface private static interface Hash{
+    Candidate apply(Candidate c)throws IOException;
+  }
+
+  private static final class Candidate{
+    private final Path path;
+    private final long size;
+    private ByteBuffer hash;
+
+    private Candidate(Path path,long size){
+      this.path = path;
+      this.size = size;
+    }
+  }
+
+  private static final class Key{
+    private final long size;
+    private final ByteBuffer hash;
+
+    private Key(long size,ByteBuffer hash){
+      this.size = size;
+      this.hash = hash;
+    }
+
+    @Override public int hashCode(){
+      return Long.hashCode(size)*31+hash.hashCode();
+    }
+
+    @Override public boolean equals(Object o){
+      if(!(o instanceof Key)){
+        return false;
+      }
+      Key k = (Key)o;
+      return size == k.size && hash.equals(k.hash);
+    }
+  }
+}
@@ -0,0 +1,67 @@
+package com.github.nodamushi.common.paths;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import com.github.nodamushi.common.paths.NPaths.Visit;
+
+/**
+ * walker which visits every directory entry with {@link LazyAttributes}.
+ * An entry is stat'ed only when the visitor reads its attributes,
+ * or when the walker has to know whether it can descend into the entry.
+ * @author nodamushi
+ * @since 1.1.0
+ */
+final class EntryWalker{
+  private final Visit v;
+  private final int m;
+
+  private EntryWalker(Visit visit,int directoryMaxDepth){
+    v=requireNonNull(visit);
+    m=directoryMaxDepth;
+  }
+
+  static void walk(Path start,int directoryMaxDepth,Visit visit)throws IOException{
+    requireNonNull(start,"start is null");
+    try{
+      new EntryWalker(visit,directoryMaxDepth).walk(start,0);
+    }catch(UncheckedIOException e){
+      throw e.getCause();
+    }catch(DirectoryIteratorException e){
+      throw e.getCause();
+    }
+  }
+
+  private boolean descend(int depth){
+    return m < 0 || depth <= m;
+  }
+
+  /**
+   * @return false if terminated.
+   */
+  private boolean walk(Path dir,int depth)throws IOException{
+    try(DirectoryStream<Path> stream = Files.newDirectoryStream(dir)){
+      for(Path p:stream){
+        LazyAttributes attrs = new LazyAttributes(p);
+        FileVisitResult ret = v.visit(p,attrs);
+        if(ret==FileVisitResult.TERMINATE){
+          return false;
+        }else if(ret==FileVisitResult.SKIP_SIBLINGS){
+          break;
+        }else if(ret==FileVisitResult.CONTINUE && descend(depth+1) && attrs.get().isDirectory()){
+          if(!walk(p,depth+1)){
+            return false;
+          }
+        }
+      }
+    }
+    return true;
+  }
+}
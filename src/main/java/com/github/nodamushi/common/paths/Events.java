@@ -0,0 +1,57 @@
+package com.github.nodamushi.common.paths;
+
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import com.github.nodamushi.common.paths.NPaths.WalkListener;
+
+/**
+ * JDK Flight Recorder events.
+ * Java 8 version,which records nothing.This class is replaced by META-INF/versions/11/.../Events.class on Java 11 or later.
+ * @author nodamushi
+ * @since 1.1.0
+ */
+final class Events{
+  /**
+   * start recording a walk.
+   * @param start start path
+   * @param directoryMode true if the walk visits the directories.
+   * @return listener which records the walk.<code>null</code> if no event is enabled.
+   */
+  static WalkListener walk(Path start,boolean directoryMode){
+    return null;
+  }
+
+  /**
+   * start recording a reader.
+   * @param path file
+   * @param in opened input stream of <code>path</code>
+   * @return <code>in</code>,or a stream which records the read bytes when it is closed.
+   */
+  static InputStream read(Path path,InputStream in){
+    return in;
+  }
+
+  /**
+   * record the BOM detection of a stream returned by {@link #read(Path, InputStream)}.
+   * @param in stream
+   * @param charset charset of the reader
+   * @param bom true if the BOM was found.
+   */
+  static void bom(InputStream in,Charset charset,boolean bom){
+  }
+
+  /**
+   * test whether a file exists,and record the probe.
+   * @param path path
+   * @param cache nullable
+   * @return true if <code>path</code> exists.
+   */
+  static boolean exists(Path path,ListingCache cache){
+    return cache==null?Files.exists(path):cache.exists(path);
+  }
+
+  private Events(){}
+}
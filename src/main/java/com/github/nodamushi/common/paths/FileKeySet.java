@@ -0,0 +1,155 @@
+package com.github.nodamushi.common.paths;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * set of {@link java.nio.file.attribute.BasicFileAttributes#fileKey()},with a long value for each key.<br>
+ * A unix file key "(dev=...,ino=...)" is stored as 3 longs(dev,ino,value) in an open addressing table(linear probing),
+ * so an entry costs about 24-48 bytes instead of a key object and a hash map node.
+ * The other keys are stored in a {@link HashMap}.
+ * @author nodamushi
+ * @since 1.1.0
+ */
+final class FileKeySet{
+  private static final String DEV = "(dev=";
+  private static final String INO = ",ino=";
+
+  /** dev,ino,value,dev,ino,value,... (0,0) is an empty slot. */
+  private long[] table = new long[3*64];
+  private int size;
+  /** value of (0,0).-1 if absent. */
+  private long zero = -1;
+  private Map<Object,Long> others;
+
+  /**
+   * @param key file key.non null.
+   * @return true if <code>key</code> was not in this set.
+   */
+  boolean add(Object key){
+    return access(key,0,true) < 0;
+  }
+
+  /**
+   * @return true if the pair was not in this set.
+   */
+  boolean add(long dev,long ino){
+    return put(dev,ino,0) < 0;
+  }
+
+  /**
+   * @param key file key.non null.
+   * @return the value of <code>key</code>,or -1 if <code>key</code> is not in this set.
+   */
+  long get(Object key){
+    return access(key,-1,false);
+  }
+
+  /**
+   * @param key file key.non null.
+   * @param value value.&gt;= 0
+   * @return the old value,or -1 if <code>key</code> was not in this set.
+   */
+  long put(Object key,long value){
+    return access(key,value,true);
+  }
+
+  int size(){
+    return size+(zero<0?0:1)+(others==null?0:others.size());
+  }
+
+  private long access(Object key,long value,boolean put){
+    String s = key.toString();
+    if(s.startsWith(DEV) && s.endsWith(")")){
+      int i = s.indexOf(INO,DEV.length());
+      if(i > 0){
+        try{
+          long dev = Long.parseUnsignedLong(s.substring(DEV.length(),i),16);
+          long ino = Long.parseLong(s.substring(i+INO.length(),s.length()-1));
+          return put?put(dev,ino,value):get(dev,ino);
+        }catch(NumberFormatException e){
+          // not a unix key
+        }
+      }
+    }
+    if(others == null){
+      if(!put){
+        return -1;
+      }
+      others = new HashMap<>();
+    }
+    Long old = put?others.put(key,value):others.get(key);
+    return old==null?-1:old;
+  }
+
+  private long get(long dev,long ino){
+    if(dev == 0 && ino == 0){
+      return zero;
+    }
+    int mask = table.length/3-1;
+    for(int i=hash(dev,ino)&mask;;i=(i+1)&mask){
+      long d = table[3*i],n = table[3*i+1];
+      if(d == 0 && n == 0){
+        return -1;
+      }
+      if(d == dev && n == ino){
+        return table[3*i+2];
+      }
+    }
+  }
+
+  private long put(long dev,long ino,long value){
+    if(dev == 0 && ino == 0){
+      long old = zero;
+      zero = value;
+      return old;
+    }
+    if((size+1)*4L > table.length/3*3L){
+      grow();
+    }
+    long old = insert(table,dev,ino,value);
+    if(old < 0){
+      size++;
+    }
+    return old;
+  }
+
+  /**
+   * @return the old value,or -1 if inserted.
+   */
+  private static long insert(long[] t,long dev,long ino,long value){
+    int mask = t.length/3-1;
+    for(int i=hash(dev,ino)&mask;;i=(i+1)&mask){
+      long d = t[3*i],n = t[3*i+1];
+      if(d == 0 && n == 0){
+        t[3*i] = dev;
+        t[3*i+1] = ino;
+        t[3*i+2] = value;
+        return -1;
+      }
+      if(d == dev && n == ino){
+        long old = t[3*i+2];
+        t[3*i+2] = value;
+        return old;
+      }
+    }
+  }
+
+  private void grow(){
+    long[] t = new long[table.length*2];
+    for(int i=0;i<table.length;i+=3){
+      if(table[i] != 0 || table[i+1] != 0){
+        insert(t,table[i],table[i+1],table[i+2]);
+      }
+    }
+    table = t;
+  }
+
+  private static int hash(long dev,long ino){
+    long h = ino*0x9E3779B97F4A7C15L ^ dev;
+    h ^= h>>>33;
+    h *= 0xFF51AFD7ED558CCDL;
+    h ^= h>>>33;
+    return (int)h;
+  }
+}
@@ -0,0 +1,243 @@
+package com.github.nodamushi.common.paths;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Queue;
+
+import com.github.nodamushi.common.paths.NPaths.Visit;
+
+/**
+ * breadth-first or best-first walker.<br>
+ * Only one directory is open at a time.
+ * The directories to be walked(the frontier) are kept in memory up to <code>maxFrontier</code>,
+ * and the rest are spilled to a temporary file,so the heap usage does not depend on the shape of the tree.
+ * @author nodamushi
+ * @since 1.1.0
+ */
+final class FrontierWalker{
+  private final Visit v;
+  private final boolean d;
+  private final int m;
+
+  private FrontierWalker(Visit visit,boolean directoryMode,int directoryMaxDepth){
+    v = requireNonNull(visit);
+    d = directoryMode;
+    m = directoryMaxDepth;
+  }
+
+  static void walk(Path start,int directoryMaxDepth,boolean directoryMode,int maxFrontier,
+      Comparator<? super Path> order,Visit visit)throws IOException{
+    requireNonNull(start,"start is null");
+    if(maxFrontier <= 0){
+      throw new IllegalArgumentException("maxFrontier <= 0 :"+maxFrontier);
+    }
+    FrontierWalker w = new FrontierWalker(visit,directoryMode,directoryMaxDepth);
+    BasicFileAttributes attrs = Files.readAttributes(start,BasicFileAttributes.class,LinkOption.NOFOLLOW_LINKS);
+    if(!attrs.isDirectory()){
+      if(!directoryMode){
+        visit.visit(start,attrs);
+      }
+      return;
+    }
+    if(directoryMode && visit.visit(start,attrs)!=FileVisitResult.CONTINUE){
+      return;
+    }
+    try(Frontier f = new Frontier(start,maxFrontier,order)){
+      f.push(new Dir(start,0,0));
+      Dir dir;
+      while((dir = f.pop()) != null){
+        if(!w.list(dir,f)){
+          return;
+        }
+      }
+    }catch(DirectoryIteratorException e){
+      throw e.getCause();
+    }
+  }
+
+  private boolean descend(int depth){
+    return m < 0 || depth <= m;
+  }
+
+  /**
+   * @return false if terminated.
+   */
+  private boolean list(Dir dir,Frontier f)throws IOException{
+    try(DirectoryStream<Path> stream = Files.newDirectoryStream(dir.path)){
+      for(Path p:stream){
+        BasicFileAttributes attrs = Files.readAttributes(p,BasicFileAttributes.class,LinkOption.NOFOLLOW_LINKS);
+        FileVisitResult ret;
+        if(attrs.isDirectory()){
+          ret = d?v.visit(p,attrs):FileVisitResult.CONTINUE;
+          if(ret==FileVisitResult.CONTINUE && descend(dir.depth+1)){
+            f.push(new Dir(p,dir.depth+1,dir.base));
+          }
+        }else{
+          ret = d?FileVisitResult.CONTINUE:v.visit(p,attrs);
+        }
+        if(ret==FileVisitResult.TERMINATE){
+          return false;
+        }else if(ret==FileVisitResult.SKIP_SIBLINGS){
+          break;
+        }
+      }
+    }
+    return true;
+  }
+
+  private static final class Dir{
+    private final Path path;
+    private final int depth;
+    /** index of the base path of the frontier which <code>path</code> is under. */
+    private final int base;
+    private Dir(Path path,int depth,int base){
+      this.path = path;
+      this.depth = depth;
+      this.base = base;
+    }
+  }
+
+  /**
+   * queue of the directories.
+   * FIFO when <code>order</code> is <code>null</code>,otherwise a priority queue.<br>
+   * FIFO:once a directory is spilled,the following directories are spilled too until the file is drained,
+   * so the order is kept.<br>
+   * priority:when the queue overflows,the worse half is spilled.
+   * The spilled directories are loaded again when the queue becomes empty,
+   * and the temporary file is deleted when it is drained.<br>
+   * A spilled directory is written as the string of the path relative to its base path(<code>start</code> at first).
+   * A path string does not always give the same path again(e.g. a file name which is not valid in the charset of the file system),
+   * so such a directory is kept in memory as a new base path,and its subdirectories are written relative to it.
+   */
+  private static final class Frontier implements Closeable{
+    private final FileSystem fs;
+    private final List<Path> bases = new ArrayList<>();
+    private final int max;
+    private final Comparator<Dir> order;
+    private final Queue<Dir> queue;
+    private Path file;
+    private DataOutputStream out;
+    private DataInputStream in;
+    private long spilled;
+
+    Frontier(Path start,int max,Comparator<? super Path> order){
+      fs = start.getFileSystem();
+      bases.add(start);
+      this.max = max;
+      if(order == null){
+        this.order = null;
+        queue = new ArrayDeque<>();
+      }else{
+        this.order = (a,b)->order.compare(a.path,b.path);
+        queue = new PriorityQueue<>(this.order);
+      }
+    }
+
+    private void push(Dir dir)throws IOException{
+      if(order == null){
+        if(spilled == 0 && queue.size() < max){
+          queue.add(dir);
+        }else{
+          spill(dir);
+        }
+      }else{
+        queue.add(dir);
+        if(queue.size() > max){
+          List<Dir> sorted = new ArrayList<>(queue.size());
+          while(!queue.isEmpty()){
+            sorted.add(queue.poll());
+          }
+          int keep = (max+1)/2;
+          queue.addAll(sorted.subList(0,keep));
+          for(Dir s:sorted.subList(keep,sorted.size())){
+            spill(s);
+          }
+        }
+      }
+    }
+
+    private Dir pop()throws IOException{
+      if(queue.isEmpty() && spilled != 0){
+        out.flush();
+        for(int i=0;i<max && spilled != 0;i++,spilled--){
+          int base = in.readInt();
+          char[] path = new char[in.readInt()];
+          for(int j=0;j<path.length;j++){
+            path[j] = in.readChar();
+          }
+          queue.add(new Dir(bases.get(base).resolve(fs.getPath(new String(path))),in.readInt(),base));
+        }
+        if(spilled == 0){
+          close();
+        }
+      }
+      return queue.poll();
+    }
+
+    private void spill(Dir dir)throws IOException{
+      if(out == null){
+        file = Files.createTempFile("npaths-frontier",".tmp");
+        out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)));
+        in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)));
+      }
+      int base = dir.base;
+      String path = bases.get(base).relativize(dir.path).toString();
+      if(!dir.path.equals(resolve(base,path))){
+        base = bases.size();
+        bases.add(dir.path);
+        path = "";
+      }
+      out.writeInt(base);
+      out.writeInt(path.length());
+      out.writeChars(path);
+      out.writeInt(dir.depth);
+      spilled++;
+    }
+
+    /**
+     * @return null if <code>path</code> is not a valid path.
+     */
+    private Path resolve(int base,String path){
+      try{
+        return bases.get(base).resolve(fs.getPath(path));
+      }catch(InvalidPathException e){
+        return null;
+      }
+    }
+
+    @Override public void close()throws IOException{
+      if(file == null){
+        return;
+      }
+      try{
+        out.close();
+        in.close();
+      }finally{
+        Files.deleteIfExists(file);
+        file = null;
+        out = null;
+        in = null;
+      }
+    }
+  }
+}
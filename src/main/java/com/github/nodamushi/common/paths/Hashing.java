@@ -0,0 +1,80 @@
+package com.github.nodamushi.common.paths;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * SHA-256 of files by memory-mapped reads.
+ * Each window is unmapped by {@link Unmapper} after it is hashed.
+ * @author nodamushi
+ * @since 1.1.0
+ */
+final class Hashing{
+  /** size of the blocks hashed by {@link #hashEnds(Path, long)}. */
+  static final int BLOCK = 64*1024;
+  /** max size of a mapped window. */
+  private static final long WINDOW = 32L*1024*1024;
+
+  static MessageDigest newDigest(){
+    try{
+      return MessageDigest.getInstance("SHA-256");
+    }catch(NoSuchAlgorithmException e){
+      // every java platform supports SHA-256.
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * @param file file
+   * @return hash of all bytes of <code>file</code>
+   * @throws IOException I/O exception occur.
+   */
+  static byte[] hash(Path file)throws IOException{
+    MessageDigest md = newDigest();
+    try(FileChannel ch = FileChannel.open(file,StandardOpenOption.READ)){
+      update(md,ch,0,ch.size());
+    }
+    return md.digest();
+  }
+
+  /**
+   * hash the first and the last {@link #BLOCK} bytes.
+   * If <code>size</code> &lt;= 2*{@link #BLOCK},the hash is the same as {@link #hash(Path)}.
+   * @param file file
+   * @param size size of <code>file</code>
+   * @return hash
+   * @throws IOException I/O exception occur.
+   */
+  static byte[] hashEnds(Path file,long size)throws IOException{
+    MessageDigest md = newDigest();
+    try(FileChannel ch = FileChannel.open(file,StandardOpenOption.READ)){
+      if(size <= 2L*BLOCK){
+        update(md,ch,0,Math.min(size,ch.size()));
+      }else{
+        update(md,ch,0,BLOCK);
+        update(md,ch,size-BLOCK,BLOCK);
+      }
+    }
+    return md.digest();
+  }
+
+  private static void update(MessageDigest md,FileChannel ch,long position,long length)throws IOException{
+    long end = position+length;
+    for(long p=position;p < end;p+=WINDOW){
+      MappedByteBuffer b = ch.map(FileChannel.MapMode.READ_ONLY,p,Math.min(WINDOW,end-p));
+      try{
+        md.update(b);
+      }finally{
+        // do not keep the windows of many files mapped until GC.
+        Unmapper.unmap(b);
+      }
+    }
+  }
+
+  private Hashing(){}
+}
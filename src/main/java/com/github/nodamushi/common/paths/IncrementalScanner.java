@@ -0,0 +1,268 @@
+package com.github.nodamushi.common.paths;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * rescan a tree,and re-list only the directories whose last modified time changed.<br>
+ * The scanner keeps a compact record of each directory from the previous scan
+ * (the last modified time of the directory,and the sorted names,sizes and last modified times of its entries).
+ * {@link #scan(Delta)} compares the tree with the record,and reports the added,removed and modified entries.<br>
+ * Adding,removing or renaming an entry updates the last modified time of its directory,
+ * so the directories whose time is unchanged are not listed again.
+ * Note that the contents of a file can change without touching its directory,
+ * so {@link Change#MODIFIED} is reported only for the files in re-listed directories.
+ * <pre>
+ * IncrementalScanner s = new IncrementalScanner(dir,-1);
+ * s.scan((change,path,attrs)-&gt;{}); // first scan: everything is ADDED
+ * ...
+ * s.scan((change,path,attrs)-&gt;{ System.out.println(change+" "+path); });
+ * </pre>
+ * This class is not thread-safe.
+ * @author nodamushi
+ * @since 1.1.0
+ */
+public final class IncrementalScanner{
+
+  /**
+   * kind of a change.
+   * @since 1.1.0
+   */
+  public static enum Change{
+    /** a new file or directory. */
+    ADDED,
+    /** a removed file or directory. */
+    REMOVED,
+    /** a file whose size or last modified time changed. */
+    MODIFIED,
+  }
+
+  /**
+   * called from {@link IncrementalScanner#scan(Delta)} for each change.
+   * @since 1.1.0
+   */
+  @FunctionalInterface public static interface Delta{
+    /**
+     * @param change kind of the change
+     * @param path changed file or directory
+     * @param attrs current attributes.<code>null</code> if <code>change</code> is {@link Change#REMOVED}.
+     * @throws IOException exception
+     */
+    public void changed(Change change,Path path,BasicFileAttributes attrs)throws IOException;
+  }
+
+  /** a directory mtime close to the scan time may change again within the timestamp granularity. */
+  private static final long RACY_MILLIS = 2000;
+  private static final long RACY = Long.MIN_VALUE;
+
+  private final Path start;
+  private final int m;
+  private final Map<Path,Dir> dirs = new HashMap<>();
+  private Delta delta;
+  private long scanTime;
+  private int listed;
+
+  /**
+   * @param start start directory.non null.
+   * @param directoryMaxDepth Max depth of the directory access.If <code>directoryMaxDepth</code> is less than 0, it is considered to be unlimited.
+   * @throws NullPointerException <code>start</code> is <code>null</code>
+   */
+  public IncrementalScanner(Path start,int directoryMaxDepth)throws NullPointerException{
+    this.start = requireNonNull(start,"start is null");
+    m = directoryMaxDepth;
+  }
+
+  /**
+   * scan the tree and report the changes since the previous scan.
+   * All entries are reported as {@link Change#ADDED} on the first scan.
+   * @param delta called for each change.non null.
+   * @throws IOException I/O exception occur.
+   * @throws NullPointerException <code>delta</code> is <code>null</code>
+   */
+  public void scan(Delta delta)throws IOException{
+    this.delta = requireNonNull(delta,"delta is null");
+    scanTime = System.currentTimeMillis();
+    listed = 0;
+    try{
+      scan(start,0,read(start));
+    }finally{
+      this.delta = null;
+    }
+  }
+
+  /**
+   * @return the number of the directories listed by the last scan.
+   */
+  public int getListedDirectoryCount(){
+    return listed;
+  }
+
+  /**
+   * @return the number of the directories recorded.
+   */
+  public int getDirectoryCount(){
+    return dirs.size();
+  }
+
+  private static BasicFileAttributes read(Path p)throws IOException{
+    return Files.readAttributes(p,BasicFileAttributes.class,LinkOption.NOFOLLOW_LINKS);
+  }
+
+  private boolean descend(int depth){
+    return m < 0 || depth <= m;
+  }
+
+  private void scan(Path dir,int depth,BasicFileAttributes attrs)throws IOException{
+    Dir old = dirs.get(dir);
+    long mtime = attrs.lastModifiedTime().toMillis();
+    if(old != null && old.mtime == mtime){
+      try{
+        for(int i=0;i<old.names.length;i++){
+          if(old.isDirectory(i) && descend(depth+1)){
+            Path c = dir.resolve(old.names[i]);
+            scan(c,depth+1,read(c));
+          }
+        }
+        return;
+      }catch(NoSuchFileException e){
+        // the directory changed while scanning.
+      }
+    }
+    relist(dir,depth,mtime,old);
+  }
+
+  private void relist(Path dir,int depth,long mtime,Dir old)throws IOException{
+    listed++;
+    List<Path> list = new ArrayList<>();
+    try(DirectoryStream<Path> stream = Files.newDirectoryStream(dir)){
+      for(Path p:stream){
+        list.add(p);
+      }
+    }catch(DirectoryIteratorException e){
+      throw e.getCause();
+    }
+    int n = list.size();
+    String[] names = new String[n];
+    for(int i=0;i<n;i++){
+      names[i] = list.get(i).getFileName().toString();
+    }
+    Arrays.sort(names);
+    BasicFileAttributes[] attrs = new BasicFileAttributes[n];
+    int found = 0;
+    for(int i=0;i<n;i++){
+      try{
+        attrs[i] = read(dir.resolve(names[i]));
+        found++;
+      }catch(NoSuchFileException e){
+        // removed after listing.
+        mtime = RACY;
+      }
+    }
+    // the removed names are not recorded,so they are not reported again by the next scan.
+    String[] recorded = names;
+    if(found < n){
+      recorded = new String[found];
+      for(int i=0,k=0;i<n;i++){
+        if(attrs[i] != null){
+          recorded[k++] = names[i];
+        }
+      }
+    }
+    Dir now = new Dir(mtime >= scanTime - RACY_MILLIS?RACY:mtime,recorded);
+    for(int i=0,k=0;i<n;i++){
+      if(attrs[i] != null){
+        now.set(k++,attrs[i]);
+      }
+    }
+    int o = 0,olength = old==null?0:old.names.length;
+    for(int i=0;i<n;i++){
+      String name = names[i];
+      while(o < olength && old.names[o].compareTo(name) < 0){
+        removed(dir,old,o++);
+      }
+      boolean same = o < olength && old.names[o].equals(name);
+      BasicFileAttributes a = attrs[i];
+      Path p = dir.resolve(name);
+      if(a == null){
+        if(same){
+          removed(dir,old,o++);
+        }
+        continue;
+      }
+      if(same && old.isDirectory(o) != a.isDirectory()){
+        removed(dir,old,o++);
+        same = false;
+      }
+      if(!same){
+        delta.changed(Change.ADDED,p,a);
+      }else{
+        if(!a.isDirectory() && (old.sizes[o]!=a.size() || old.mtimes[o]!=a.lastModifiedTime().toMillis())){
+          delta.changed(Change.MODIFIED,p,a);
+        }
+        o++;
+      }
+      if(a.isDirectory() && descend(depth+1)){
+        scan(p,depth+1,a);
+      }
+    }
+    while(o < olength){
+      removed(dir,old,o++);
+    }
+    // after the changes are reported,so that a failed delta reports them again by the next scan.
+    dirs.put(dir,now);
+  }
+
+  private void removed(Path dir,Dir old,int index)throws IOException{
+    Path p = dir.resolve(old.names[index]);
+    if(old.isDirectory(index)){
+      Dir d = dirs.remove(p);
+      if(d != null){
+        for(int i=0;i<d.names.length;i++){
+          removed(p,d,i);
+        }
+      }
+    }
+    delta.changed(Change.REMOVED,p,null);
+  }
+
+  private static final class Dir{
+    private final long mtime;
+    private final String[] names;
+    private final long[] sizes;
+    private final long[] mtimes;
+    private final long[] directories;
+
+    private Dir(long mtime,String[] names){
+      this.mtime = mtime;
+      this.names = names;
+      sizes = new long[names.length];
+      mtimes = new long[names.length];
+      directories = new long[(names.length+63)>>>6];
+    }
+
+    private void set(int i,BasicFileAttributes a){
+      sizes[i] = a.size();
+      mtimes[i] = a.lastModifiedTime().toMillis();
+      if(a.isDirectory()){
+        directories[i>>>6] |= 1L << i;
+      }
+    }
+
+    private boolean isDirectory(int i){
+      return (directories[i>>>6] & (1L << i)) != 0;
+    }
+  }
+}
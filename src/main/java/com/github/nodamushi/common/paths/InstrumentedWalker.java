@@ -0,0 +1,137 @@
+package com.github.nodamushi.common.paths;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.FileVisitor;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+
+import com.github.nodamushi.common.paths.NPaths.Visit;
+import com.github.nodamushi.common.paths.NPaths.WalkListener;
+
+/**
+ * walker which tells a {@link WalkListener} where the time goes.<br>
+ * It calls a {@link FileVisitor} exactly like {@link Files#walkFileTree(Path, FileVisitor)}:
+ * a directory is opened before {@link FileVisitor#preVisitDirectory(Object, BasicFileAttributes)},
+ * SKIP_SIBLINGS of {@link FileVisitor#postVisitDirectory(Object, IOException)} is ignored,
+ * and the errors are passed to {@link FileVisitor#visitFileFailed(Object, IOException)} and {@link FileVisitor#postVisitDirectory(Object, IOException)}.
+ * So the walk of the visitor of {@link NPaths#walkFiles(Path, int, Visit)} is the same with or without the listener.<br>
+ * The listing time of a directory is the time of opening the directory and of reading its entries,
+ * measured around the calls of the {@link DirectoryStream} only.
+ * @author nodamushi
+ * @since 1.1.0
+ */
+final class InstrumentedWalker{
+  private final FileVisitor<Path> v;
+  private final WalkListener l;
+
+  private InstrumentedWalker(FileVisitor<Path> visitor,WalkListener listener){
+    v = requireNonNull(visitor);
+    l = requireNonNull(listener,"listener is null");
+  }
+
+  /**
+   * @param visit visit
+   * @param listener listener
+   * @return <code>visit</code> which tells the listener the time spent in it.
+   */
+  static Visit timed(Visit visit,WalkListener listener){
+    requireNonNull(visit);
+    requireNonNull(listener,"listener is null");
+    return (p,attrs)->{
+      long t = System.nanoTime();
+      try{
+        return visit.visit(p,attrs);
+      }finally{
+        listener.visited(p,attrs.isDirectory(),System.nanoTime()-t);
+      }
+    };
+  }
+
+  static void walk(Path start,WalkListener listener,FileVisitor<Path> visitor)
+      throws IOException{
+    requireNonNull(start,"start is null");
+    InstrumentedWalker w = new InstrumentedWalker(visitor,listener);
+    long t = System.nanoTime();
+    try{
+      w.walk(start,0);
+    }finally{
+      listener.finished(start,System.nanoTime()-t);
+    }
+  }
+
+  /**
+   * @return result of the visitor.SKIP_SIBLINGS skips the rest of the parent,TERMINATE stops the walk.
+   */
+  private FileVisitResult walk(Path p,int depth)throws IOException{
+    BasicFileAttributes attrs;
+    long t = System.nanoTime();
+    try{
+      attrs = Files.readAttributes(p,BasicFileAttributes.class,LinkOption.NOFOLLOW_LINKS);
+    }catch(IOException e){
+      return v.visitFileFailed(p,e);
+    }finally{
+      l.statted(p,System.nanoTime()-t);
+    }
+    if(!attrs.isDirectory()){
+      return v.visitFile(p,attrs);
+    }
+
+    DirectoryStream<Path> stream;
+    t = System.nanoTime();
+    try{
+      stream = Files.newDirectoryStream(p);
+    }catch(IOException e){
+      return v.visitFileFailed(p,e);
+    }
+    long list = System.nanoTime() - t;
+    int entries = 0;
+    IOException exc = null;
+    try{
+      FileVisitResult ret = v.preVisitDirectory(p,attrs);
+      if(ret != FileVisitResult.CONTINUE){
+        return ret==FileVisitResult.SKIP_SUBTREE?FileVisitResult.CONTINUE:ret;
+      }
+      try{
+        Iterator<Path> i = stream.iterator();
+        while(true){
+          t = System.nanoTime();
+          boolean next = i.hasNext();
+          Path c = next?i.next():null;
+          list += System.nanoTime() - t;
+          if(!next){
+            break;
+          }
+          entries++;
+          ret = walk(c,depth+1);
+          if(ret==FileVisitResult.TERMINATE){
+            return ret;
+          }else if(ret==FileVisitResult.SKIP_SIBLINGS){
+            break;
+          }
+        }
+      }catch(DirectoryIteratorException e){
+        exc = e.getCause();
+      }finally{
+        l.listed(p,depth,entries,list);
+      }
+    }finally{
+      try{
+        stream.close();
+      }catch(IOException e){
+        if(exc == null){
+          exc = e;
+        }
+      }
+    }
+    FileVisitResult ret = v.postVisitDirectory(p,exc);
+    return ret==FileVisitResult.SKIP_SIBLINGS?FileVisitResult.CONTINUE:ret;
+  }
+}
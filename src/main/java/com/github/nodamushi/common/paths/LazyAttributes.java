@@ -0,0 +1,50 @@
+package com.github.nodamushi.common.paths;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+
+/**
+ * {@link BasicFileAttributes} which reads the attributes on the first access,and memoizes them.
+ * An {@link IOException} is thrown as {@link UncheckedIOException}.
+ * @author nodamushi
+ * @since 1.1.0
+ */
+final class LazyAttributes implements BasicFileAttributes{
+  private final Path path;
+  private BasicFileAttributes attrs;
+
+  LazyAttributes(Path path){
+    this.path = path;
+  }
+
+  BasicFileAttributes get()throws IOException{
+    BasicFileAttributes a = attrs;
+    if(a == null){
+      attrs = a = Files.readAttributes(path,BasicFileAttributes.class,LinkOption.NOFOLLOW_LINKS);
+    }
+    return a;
+  }
+
+  private BasicFileAttributes a(){
+    try{
+      return get();
+    }catch(IOException e){
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Override public FileTime lastModifiedTime(){return a().lastModifiedTime();}
+  @Override public FileTime lastAccessTime(){return a().lastAccessTime();}
+  @Override public FileTime creationTime(){return a().creationTime();}
+  @Override public boolean isRegularFile(){return a().isRegularFile();}
+  @Override public boolean isDirectory(){return a().isDirectory();}
+  @Override public boolean isSymbolicLink(){return a().isSymbolicLink();}
+  @Override public boolean isOther(){return a().isOther();}
+  @Override public long size(){return a().size();}
+  @Override public Object fileKey(){return a().fileKey();}
+}
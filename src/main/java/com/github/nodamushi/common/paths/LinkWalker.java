@@ -0,0 +1,102 @@
+package com.github.nodamushi.common.paths;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+import com.github.nodamushi.common.paths.NPaths.Visit;
+
+/**
+ * walker which follows the symbolic links.<br>
+ * The keys of the directories listed are kept in a {@link FileKeySet} with the depth at which they were listed.
+ * A directory already listed(a cycle,or a directory reached by another link) is not walked again,
+ * unless the depth is limited and it is reached at a shallower depth,where its deeper entries are in the limit.
+ * A directory which was not listed(at the depth limit,or skipped by the visitor) is walked when it is reached by another name.
+ * When the file system has no file keys,the real paths of the directories are used.
+ * When <code>uniqueFiles</code> is true,the keys of the files are kept too,
+ * and a file linked by 2 or more names(hard links or symbolic links) is visited once.
+ * A broken link is visited as a file with its own attributes.
+ * @author nodamushi
+ * @since 1.1.0
+ */
+final class LinkWalker{
+  private final Visit v;
+  private final boolean d;
+  private final int m;
+  private final FileKeySet directories = new FileKeySet();
+  private final FileKeySet files;
+
+  private LinkWalker(Visit visit,boolean directoryMode,int directoryMaxDepth,boolean uniqueFiles){
+    v = requireNonNull(visit);
+    d = directoryMode;
+    m = directoryMaxDepth;
+    files = uniqueFiles?new FileKeySet():null;
+  }
+
+  static void walk(Path start,int directoryMaxDepth,boolean directoryMode,boolean uniqueFiles,Visit visit)
+      throws IOException{
+    requireNonNull(start,"start is null");
+    LinkWalker w = new LinkWalker(visit,directoryMode,directoryMaxDepth,uniqueFiles);
+    BasicFileAttributes attrs = Files.readAttributes(start,BasicFileAttributes.class);
+    try{
+      if(attrs.isDirectory()){
+        w.directory(start,attrs,0);
+      }else{
+        w.file(start,attrs);
+      }
+    }catch(DirectoryIteratorException e){
+      throw e.getCause();
+    }
+  }
+
+  private FileVisitResult file(Path file,BasicFileAttributes attrs)throws IOException{
+    if(d || files != null && attrs.fileKey() != null && !files.add(attrs.fileKey())){
+      return FileVisitResult.CONTINUE;
+    }
+    return v.visit(file,attrs);
+  }
+
+  /**
+   * @return the result of the visit of <code>dir</code> or its entries.
+   */
+  private FileVisitResult directory(Path dir,BasicFileAttributes attrs,int depth)throws IOException{
+    Object key = attrs.fileKey();
+    if(key == null){
+      key = dir.toRealPath();
+    }
+    long listed = directories.get(key);
+    if(0 <= listed && (m < 0 || listed <= depth)){
+      return FileVisitResult.CONTINUE;
+    }
+    FileVisitResult ret = d?v.visit(dir,attrs):FileVisitResult.CONTINUE;
+    if(ret != FileVisitResult.CONTINUE || !(m < 0 || depth <= m)){
+      return ret==FileVisitResult.SKIP_SUBTREE?FileVisitResult.CONTINUE:ret;
+    }
+    // the ancestors are in the set,so a cycle is not walked.
+    directories.put(key,depth);
+    try(DirectoryStream<Path> stream = Files.newDirectoryStream(dir)){
+      for(Path p:stream){
+        BasicFileAttributes a;
+        try{
+          a = Files.readAttributes(p,BasicFileAttributes.class);
+        }catch(IOException e){
+          a = Files.readAttributes(p,BasicFileAttributes.class,LinkOption.NOFOLLOW_LINKS);
+        }
+        FileVisitResult r = a.isDirectory()?directory(p,a,depth+1):file(p,a);
+        if(r == FileVisitResult.TERMINATE){
+          return r;
+        }else if(r == FileVisitResult.SKIP_SIBLINGS){
+          break;
+        }
+      }
+    }
+    return FileVisitResult.CONTINUE;
+  }
+}
@@ -0,0 +1,262 @@
+package com.github.nodamushi.common.paths;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.github.nodamushi.common.paths.NPaths.PathEntry;
+import com.github.nodamushi.common.paths.NPaths.Visit;
+
+/**
+ * cache of directory listings(the entries and their attributes).<br>
+ * A listing younger than the TTL is used without any I/O.
+ * An older listing is validated by the last modified time of the directory,
+ * so a valid listing costs only one stat of the directory.
+ * The least recently used listings are evicted when the total number of the cached entries exceeds the limit.<br>
+ * Note that the attributes of a file are the attributes when its directory was listed,
+ * because changing a file does not change the last modified time of its directory.<br>
+ * The cache can be shared by {@link NPaths#walkFiles(Path, int, ListingCache, Visit)},
+ * {@link NPaths#walkDirectories(Path, int, ListingCache, Visit)}
+ * and {@link NPaths#iterator(Path, int, NPaths.ItrOption, ListingCache)}.
+ * This class is thread-safe.
+ * @author nodamushi
+ * @since 1.1.0
+ */
+public final class ListingCache{
+  /** a directory mtime close to the listing time may change again within the timestamp granularity. */
+  private static final long RACY_MILLIS = 2000;
+
+  private final int maxEntries;
+  private final long ttl;
+  private final LinkedHashMap<Path,Listing> map = new LinkedHashMap<>(16,0.75f,true);
+  private int size;
+
+  /**
+   * @param maxEntries the max number of the cached entries.
+   * @param ttl time to live.A listing older than <code>ttl</code> is validated by the last modified time of the directory.
+   * 0 validates every time.
+   * @param unit unit of <code>ttl</code>.non null.
+   * @throws IllegalArgumentException <code>maxEntries</code> &lt;= 0 or <code>ttl</code> &lt; 0
+   */
+  public ListingCache(int maxEntries,long ttl,TimeUnit unit)throws IllegalArgumentException{
+    if(maxEntries <= 0){
+      throw new IllegalArgumentException("maxEntries <= 0 :"+maxEntries);
+    }
+    if(ttl < 0){
+      throw new IllegalArgumentException("ttl < 0 :"+ttl);
+    }
+    this.maxEntries = maxEntries;
+    this.ttl = unit.toNanos(ttl);
+  }
+
+  /**
+   * get the entries of <code>dir</code>.
+   * @param dir directory.non null.
+   * @return unmodifiable list of the entries.
+   * @throws IOException I/O exception occur.
+   */
+  public List<PathEntry> list(Path dir)throws IOException{
+    return Collections.unmodifiableList(Arrays.asList(listing(dir).entries));
+  }
+
+  /**
+   * test whether a file exists by the listing of its parent.
+   * A path without a name,or whose name is "." or "..",is tested by {@link Files#exists(Path, java.nio.file.LinkOption...)},
+   * because the listings do not contain them.
+   * A symbolic link is followed as {@link Files#exists(Path, java.nio.file.LinkOption...)},
+   * so a broken link does not exist.<br>
+   * Note that the first probe of a directory lists the directory and stats all its entries,
+   * so probing a few names of large directories costs more than {@link Files#exists(Path, java.nio.file.LinkOption...)}.
+   * The cache pays off when many names of the same directories are probed.
+   * @param path path.non null.
+   * @return true if the listing of the parent contains <code>path</code> and it is not a broken link.
+   */
+  public boolean exists(Path path){
+    Path parent = path.getParent();
+    Path name = path.getFileName();
+    if(name == null || name.toString().equals(".") || name.toString().equals("..")){
+      return Files.exists(path);
+    }
+    if(parent == null){
+      parent = path.getFileSystem().getPath("");
+    }
+    PathEntry e;
+    try{
+      e = listing(parent).get(name.toString());
+    }catch(IOException ex){
+      return false;
+    }
+    if(e == null){
+      return false;
+    }
+    return !e.getAttributes().isSymbolicLink() || Files.exists(path);
+  }
+
+  /**
+   * remove the listing of <code>dir</code>.
+   * @param dir directory
+   */
+  public synchronized void invalidate(Path dir){
+    Listing l = map.remove(dir);
+    if(l != null){
+      size -= l.entries.length;
+    }
+  }
+
+  /**
+   * remove all listings.
+   */
+  public synchronized void clear(){
+    map.clear();
+    size = 0;
+  }
+
+  /**
+   * @return the number of the cached entries.
+   */
+  public synchronized int size(){
+    return size;
+  }
+
+  private synchronized Listing get(Path dir){
+    return map.get(dir);
+  }
+
+  private synchronized void put(Path dir,Listing l){
+    Listing old = map.put(dir,l);
+    if(old != null){
+      size -= old.entries.length;
+    }
+    size += l.entries.length;
+    Iterator<Listing> i = map.values().iterator();
+    while(size > maxEntries && i.hasNext()){
+      Listing e = i.next();
+      i.remove();
+      size -= e.entries.length;
+    }
+  }
+
+  private Listing listing(Path dir)throws IOException{
+    Listing l = get(dir);
+    long now = System.nanoTime();
+    if(l != null){
+      if(now - l.time < ttl){
+        return l;
+      }
+      if(!l.racy){
+        long mtime;
+        try{
+          mtime = Files.readAttributes(dir,BasicFileAttributes.class).lastModifiedTime().toMillis();
+        }catch(NoSuchFileException e){
+          invalidate(dir);
+          throw e;
+        }
+        if(mtime == l.mtime){
+          l.time = now;
+          return l;
+        }
+      }
+    }
+    long listed = System.currentTimeMillis();
+    long mtime = Files.readAttributes(dir,BasicFileAttributes.class).lastModifiedTime().toMillis();
+    List<PathEntry> list = new ArrayList<>();
+    try(DirectoryStream<Path> stream = Files.newDirectoryStream(dir)){
+      for(Path p:stream){
+        try{
+          list.add(new PathEntry(p,Files.readAttributes(p,BasicFileAttributes.class,LinkOption.NOFOLLOW_LINKS)));
+        }catch(NoSuchFileException e){
+          // removed after listing.
+        }
+      }
+    }catch(DirectoryIteratorException e){
+      throw e.getCause();
+    }
+    l = new Listing(list.toArray(new PathEntry[list.size()]),mtime,now,mtime >= listed - RACY_MILLIS);
+    put(dir,l);
+    return l;
+  }
+
+  /**
+   * walk with the cached listings.
+   * The order and the depth are the same as {@link NPaths#walkFiles(Path, int, Visit)}.
+   */
+  void walk(Path start,int directoryMaxDepth,boolean directoryMode,Visit visit)throws IOException{
+    requireNonNull(visit);
+    BasicFileAttributes attrs = Files.readAttributes(start,BasicFileAttributes.class,LinkOption.NOFOLLOW_LINKS);
+    if(!attrs.isDirectory()){
+      if(!directoryMode){
+        visit.visit(start,attrs);
+      }
+      return;
+    }
+    if(directoryMode && visit.visit(start,attrs)!=FileVisitResult.CONTINUE){
+      return;
+    }
+    walk(start,0,directoryMaxDepth,directoryMode,visit);
+  }
+
+  private boolean walk(Path dir,int depth,int m,boolean d,Visit v)throws IOException{
+    for(PathEntry e:listing(dir).entries){
+      BasicFileAttributes attrs = e.getAttributes();
+      FileVisitResult ret;
+      if(attrs.isDirectory()){
+        ret = d?v.visit(e.getPath(),attrs):FileVisitResult.CONTINUE;
+        if(ret==FileVisitResult.CONTINUE && (m < 0 || depth+1 <= m) && !walk(e.getPath(),depth+1,m,d,v)){
+          return false;
+        }
+      }else{
+        ret = d?FileVisitResult.CONTINUE:v.visit(e.getPath(),attrs);
+      }
+      if(ret==FileVisitResult.TERMINATE){
+        return false;
+      }else if(ret==FileVisitResult.SKIP_SIBLINGS){
+        break;
+      }
+    }
+    return true;
+  }
+
+  private static final class Listing{
+    private final PathEntry[] entries;
+    private final long mtime;
+    private final boolean racy;
+    private volatile long time;
+    private volatile Map<String,PathEntry> names;
+
+    private Listing(PathEntry[] entries,long mtime,long time,boolean racy){
+      this.entries = entries;
+      this.mtime = mtime;
+      this.time = time;
+      this.racy = racy;
+    }
+
+    private PathEntry get(String name){
+      Map<String,PathEntry> m = names;
+      if(m == null){
+        m = new HashMap<>(entries.length*2);
+        for(PathEntry e:entries){
+          m.put(NPaths.getFileName(e.getPath()),e);
+        }
+        names = m;
+      }
+      return m.get(name);
+    }
+  }
+}
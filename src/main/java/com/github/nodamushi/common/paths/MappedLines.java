@@ -0,0 +1,257 @@
+package com.github.nodamushi.common.paths;
+
+import static java.nio.charset.StandardCharsets.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * lines of a memory-mapped file.<br>
+ * The file is mapped in windows of {@link #WINDOW} bytes(a longer line gets a larger window),
+ * and a line is found by the bytes of '\n' and '\r' in the window and decoded directly from it.
+ * The BOM is skipped by the offset of the first line.
+ * Each window is unmapped when the next one is mapped or the stream is closed.<br>
+ * {@link #trySplit()} cuts the remaining bytes at the middle,aligned to the code unit,
+ * and moves the cut after the next line terminator,so both halves start at a line.
+ * A split maps its own windows,and releases them when it reaches its end.
+ * The windows of the splits abandoned by a short-circuit operation are released by GC,
+ * because another thread may still read them when the stream is closed.
+ * @author nodamushi
+ * @since 1.1.0
+ */
+final class MappedLines implements Spliterator<String>{
+  /** size of a mapped window. */
+  static final int WINDOW = 32*1024*1024;
+  /** {@link #trySplit()} does not split fewer bytes than this. */
+  private static final int MIN_SPLIT = 64*1024;
+
+  private final FileChannel channel;
+  private final Charset charset;
+  /** bytes of a code unit:1 or 2(UTF-16). */
+  private final int unit;
+  private final boolean littleEndian;
+  private final int window;
+  private final long end;
+  private final long minSplit;
+  private long position;
+  private MappedByteBuffer buf;
+  private long bufStart;
+  private byte[] bytes = new byte[256];
+  private boolean closed;
+  private boolean split;
+
+  private MappedLines(FileChannel channel,Charset charset,long position,long end,int window){
+    this.channel = channel;
+    this.charset = charset;
+    unit = charset.equals(UTF_16BE) || charset.equals(UTF_16LE)?2:1;
+    littleEndian = charset.equals(UTF_16LE);
+    this.position = position;
+    this.end = end;
+    this.window = window;
+    minSplit = Math.max(2*unit,Math.min(window,MIN_SPLIT));
+  }
+
+  /**
+   * @return true if '\n' and '\r' are the only bytes(code units) of the line terminators in <code>cs</code>.
+   */
+  private static boolean supported(Charset cs){
+    return cs.equals(UTF_8) || cs.equals(US_ASCII) || cs.equals(ISO_8859_1) ||
+        cs.equals(UTF_16) || cs.equals(UTF_16BE) || cs.equals(UTF_16LE);
+  }
+
+  static Stream<String> lines(Path path,Charset charset,int window)throws IOException{
+    Charset cs = charset==null?Charset.defaultCharset():charset;
+    if(!supported(cs)){
+      BufferedReader r = NPaths.newBufferedReader(path,cs);
+      return r.lines().onClose(()->{
+        try{
+          r.close();
+        }catch(IOException e){
+          throw new UncheckedIOException(e);
+        }
+      });
+    }
+    FileChannel ch = FileChannel.open(path,StandardOpenOption.READ);
+    try{
+      long size = ch.size();
+      ByteBuffer head = ByteBuffer.allocate(3);
+      while(head.hasRemaining() && ch.read(head,head.position()) > 0){}
+      int n = head.position();
+      int b0 = n>0?head.get(0)&0xFF:-1,b1 = n>1?head.get(1)&0xFF:-1,b2 = n>2?head.get(2)&0xFF:-1;
+      long skip = 0;
+      if(cs.equals(UTF_8)){
+        skip = b0==0xEF && b1==0xBB && b2==0xBF?3:0;
+      }else if(cs.equals(UTF_16)){
+        // the decoder of UTF-16 reads the BOM,and big endian without the BOM.
+        skip = b0==0xFE && b1==0xFF || b0==0xFF && b1==0xFE?2:0;
+        cs = b0==0xFF && b1==0xFE?UTF_16LE:UTF_16BE;
+      }else if(cs.equals(UTF_16BE)){
+        skip = b0==0xFE && b1==0xFF?2:0;
+      }else if(cs.equals(UTF_16LE)){
+        skip = b0==0xFF && b1==0xFE?2:0;
+      }
+      MappedLines s = new MappedLines(ch,cs,skip,size,window);
+      return StreamSupport.stream(s,false).onClose(s::close);
+    }catch(IOException|RuntimeException|Error e){
+      ch.close();
+      throw e;
+    }
+  }
+
+  @Override public boolean tryAdvance(Consumer<? super String> action){
+    if(closed || position >= end){
+      release();
+      return false;
+    }
+    String line;
+    try{
+      long lineEnd = find(position);
+      line = decode(position,lineEnd);
+      position = lineEnd;
+      if(lineEnd < end){
+        position += unit;
+        if(codeUnit(lineEnd) == '\r' && position+unit <= end && codeUnit(position) == '\n'){
+          position += unit;
+        }
+      }
+    }catch(IOException e){
+      throw new UncheckedIOException(e);
+    }
+    action.accept(line);
+    return true;
+  }
+
+  /**
+   * @param start offset of a code unit
+   * @return the offset of the first line terminator from <code>start</code>,or {@link #end}.
+   * The window contains [start,the terminator].
+   */
+  private long find(long start)throws IOException{
+    long p = start;
+    while(true){
+      if(buf == null || start < bufStart || p+unit > bufStart+buf.limit()){
+        if(p+unit > end){
+          return end;
+        }
+        // a window from the start.double it while the line does not fit.
+        map(start,Math.min(end-start,Math.max(window,2*(p-start))));
+      }
+      int i = (int)(p-bufStart);
+      int n = buf.limit()-unit;
+      for(;i<=n;i+=unit){
+        int c = unit==1?buf.get(i):unit(i);
+        if(c == '\n' || c == '\r'){
+          return bufStart+i;
+        }
+      }
+      p = bufStart+i;
+    }
+  }
+
+  private int unit(int i){
+    int hi = buf.get(littleEndian?i+1:i)&0xFF;
+    int lo = buf.get(littleEndian?i:i+1)&0xFF;
+    return hi<<8|lo;
+  }
+
+  private int codeUnit(long offset)throws IOException{
+    if(offset < bufStart || offset+unit > bufStart+buf.limit()){
+      map(offset,Math.min(end-offset,window));
+    }
+    int i = (int)(offset-bufStart);
+    return unit==1?buf.get(i):unit(i);
+  }
+
+  private void map(long offset,long size)throws IOException{
+    release();
+    buf = channel.map(FileChannel.MapMode.READ_ONLY,offset,size);
+    bufStart = offset;
+  }
+
+  private String decode(long from,long to)throws IOException{
+    int len = (int)(to-from);
+    if(len == 0){
+      return "";
+    }
+    if(buf == null || from < bufStart || to > bufStart+buf.limit()){
+      // the last bytes shorter than a code unit are not mapped by find().
+      map(from,len);
+    }
+    if(len > bytes.length){
+      bytes = new byte[Math.max(len,bytes.length*2)];
+    }
+    ByteBuffer b = buf.duplicate();
+    b.position((int)(from-bufStart));
+    b.get(bytes,0,len);
+    return new String(bytes,0,len,charset);
+  }
+
+  private void release(){
+    if(buf != null){
+      Unmapper.unmap(buf);
+      buf = null;
+    }
+  }
+
+  void close(){
+    closed = true;
+    if(!split){
+      release();
+    }
+    try{
+      channel.close();
+    }catch(IOException e){
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Override public Spliterator<String> trySplit(){
+    long size = end-position;
+    if(closed || size < minSplit){
+      return null;
+    }
+    long mid = position+size/2/unit*unit;
+    long cut;
+    try{
+      long t = find(mid);
+      if(t >= end){
+        return null;
+      }
+      cut = t+unit;
+      if(codeUnit(t) == '\r' && cut+unit <= end && codeUnit(cut) == '\n'){
+        cut += unit;
+      }
+    }catch(IOException e){
+      throw new UncheckedIOException(e);
+    }
+    if(cut >= end){
+      return null;
+    }
+    MappedLines prefix = new MappedLines(channel,charset,position,cut,window);
+    position = cut;
+    split = true;
+    return prefix;
+  }
+
+  /**
+   * the number of the remaining bytes.
+   */
+  @Override public long estimateSize(){
+    return end-position;
+  }
+
+  @Override public int characteristics(){
+    return ORDERED | NONNULL;
+  }
+}
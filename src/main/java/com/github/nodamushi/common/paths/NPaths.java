@@ -9,6 +9,8 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.nio.file.FileSystem;
 import java.nio.file.FileSystems;
@@ -19,16 +21,29 @@ import java.nio.file.OpenOption;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Spliterator;
 import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Semaphore;
 import java.util.function.Consumer;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
 
 /**
- * nodamushi path utilities.
+ * nodamushi path utilities.<br>
+ * On Java 11 or later,{@link #walkFiles(Path, int, Visit)},{@link #walkDirectories(Path, int, Visit)},
+ * {@link #newBufferedReader(Path, Charset, OpenOption...)} and the existence tests of {@link ItrOption#EXIST_ONLY}
+ * emit JDK Flight Recorder events(category "NPaths") while the events are enabled in a recording.
  * @author nodamushi
  * @version 1.0.0
  */
@@ -773,12 +788,35 @@ public class NPaths{
    * @return {@link BufferedReader}
    * @throws IOException if an I/O error occurs
    * @throws NullPointerException <code>path</code> is <code>null</code>
+   * @see ReaderPool
    * @since 1.0.0
    */
   public static BufferedReader newBufferedReader(Path path,Charset charset,OpenOption... options)
       throws IOException,NullPointerException{
     requireNonNull(path,"path is null");
-    return newBufferedReader(Files.newInputStream(path,options!=null? options:new OpenOption[0]),charset);
+    return newBufferedReader(Events.read(path,Files.newInputStream(path,options!=null? options:new OpenOption[0])),charset);
+  }
+
+  /**
+   * read the lines of a file like {@link BufferedReader#lines()} of {@link #newBufferedReader(Path, Charset, OpenOption...)}.<br>
+   * When <code>charset</code> is UTF-8/US-ASCII/ISO-8859-1/UTF-16/UTF-16BE/UTF-16LE,
+   * the file is memory-mapped in windows,the BOM is skipped by the offset,
+   * and each line is decoded directly from the mapped bytes without the copies of the reader.
+   * Other charsets are read by {@link #newBufferedReader(Path, Charset, OpenOption...)}.<br>
+   * The mapped stream can be {@link Stream#parallel()}:
+   * it is split at the byte offsets,aligned to the code units of UTF-16 and moved to the next line terminator.<br>
+   * The stream should be closed(try-with-resources) to release the mappings and the file.
+   * @param path file path.non null.
+   * @param charset if <code>charset</code> is <code>null</code>,{@link Charset#defaultCharset()} will be used.
+   * @return lines
+   * @throws IOException if an I/O error occurs
+   * @throws NullPointerException <code>path</code> is <code>null</code>
+   * @since 1.1.0
+   */
+  public static Stream<String> lines(Path path,Charset charset)
+      throws IOException,NullPointerException{
+    requireNonNull(path,"path is null");
+    return MappedLines.lines(path,charset,MappedLines.WINDOW);
   }
 
   /**
@@ -794,6 +832,7 @@ public class NPaths{
   public static BufferedReader newBufferedReader(InputStream inputStream,Charset charset)
       throws IOException,NullPointerException{
     if(charset==null)charset = Charset.defaultCharset();
+    InputStream in = inputStream;
     byte[] skip=
         (charset.equals(UTF_8))?new byte[]{(byte)0xEF,(byte)0xBB,(byte)0xBF}:
         (charset.equals(UTF_16) || charset.equals(UTF_16BE))?new byte[]{(byte)0xFE,(byte)0xFF}:
@@ -813,10 +852,75 @@ public class NPaths{
       if(!bom){
         inputStream.reset();
       }
+      Events.bom(in,charset,bom);
+    }else{
+      Events.bom(in,charset,false);
     }
     return new BufferedReader(new InputStreamReader(inputStream,charset));
   }
 
+  /**
+   * Open the file and create a new reader which detects the charset.
+   * @param path file path.non null.
+   * @param defaultCharset charset of ASCII text or undetectable text.
+   * If <code>defaultCharset</code> is <code>null</code>,{@link Charset#defaultCharset()} will be used.
+   * @param options options
+   * @return reader
+   * @throws IOException if an I/O error occurs
+   * @throws NullPointerException <code>path</code> is <code>null</code>
+   * @see #newDetectingReader(InputStream, Charset)
+   * @since 1.1.0
+   */
+  public static DetectingReader newDetectingReader(Path path,Charset defaultCharset,OpenOption... options)
+      throws IOException,NullPointerException{
+    requireNonNull(path,"path is null");
+    return newDetectingReader(Events.read(path,Files.newInputStream(path,options!=null? options:new OpenOption[0])),defaultCharset);
+  }
+
+  /**
+   * wrap <code>input</code> with a reader which detects the charset from the first 8KiB.<br>
+   * The bytes are read once into the buffer of the reader,and the detection is:
+   * <ol>
+   * <li>BOM of UTF-32BE/LE,UTF-8 and UTF-16BE/LE.The BOM is skipped.</li>
+   * <li>UTF-16BE/LE without the BOM,by the zero bytes of ASCII characters.</li>
+   * <li>ISO-2022-JP,by the escape sequences.</li>
+   * <li>only ASCII:<code>defaultCharset</code>.</li>
+   * <li>valid UTF-8.</li>
+   * <li>Shift_JIS or EUC-JP,by the byte patterns of the double byte characters.</li>
+   * <li>otherwise <code>defaultCharset</code>.</li>
+   * </ol>
+   * @param inputStream input
+   * @param defaultCharset charset of ASCII text or undetectable text.
+   * If <code>defaultCharset</code> is <code>null</code>,{@link Charset#defaultCharset()} will be used.
+   * @return reader
+   * @throws IOException if an I/O error occurs
+   * @throws NullPointerException <code>inputStream</code> is <code>null</code>
+   * @since 1.1.0
+   */
+  public static DetectingReader newDetectingReader(InputStream inputStream,Charset defaultCharset)
+      throws IOException,NullPointerException{
+    requireNonNull(inputStream,"inputStream is null");
+    if(defaultCharset==null)defaultCharset = Charset.defaultCharset();
+    InputStream in = new BufferedInputStream(inputStream,CharsetDetector.SNIFF);
+    in.mark(CharsetDetector.SNIFF);
+    byte[] buf = new byte[CharsetDetector.SNIFF];
+    int len = 0,read = 0;
+    while(len < buf.length && (read = in.read(buf,len,buf.length-len)) >= 0){
+      len += read;
+    }
+    Charset charset = CharsetDetector.detect(buf,len,read < 0,defaultCharset);
+    in.reset();
+    Charset bom = CharsetDetector.bom(buf,len);
+    boolean skip = bom != null && bom.equals(charset);
+    if(skip){
+      for(long n=CharsetDetector.bomLength(bom);n > 0;){
+        n -= in.skip(n);
+      }
+    }
+    Events.bom(inputStream,charset,skip);
+    return new DetectingReader(new InputStreamReader(in,charset),charset,skip);
+  }
+
   /**
    * called from {@link FileVisitor#visitFile(Object, BasicFileAttributes)}
    * or {@link FileVisitor#preVisitDirectory(Object, BasicFileAttributes)}.
@@ -836,22 +940,203 @@ public class NPaths{
         throws IOException;
   }
 
+  /**
+   * a pair of a path and its attributes.
+   * @author nodamushi
+   * @since 1.1.0
+   */
+  public static final class PathEntry{
+    private final Path path;
+    private final BasicFileAttributes attrs;
+
+    /**
+     * @param path path.non null.
+     * @param attrs attributes of <code>path</code>.
+     * @throws NullPointerException <code>path</code> is <code>null</code>
+     */
+    public PathEntry(Path path,BasicFileAttributes attrs)throws NullPointerException{
+      this.path = requireNonNull(path,"path is null");
+      this.attrs = attrs;
+    }
+
+    /**
+     * @return path
+     */
+    public Path getPath(){
+      return path;
+    }
+
+    /**
+     * @return attributes
+     */
+    public BasicFileAttributes getAttributes(){
+      return attrs;
+    }
+
+    @Override public String toString(){
+      return path.toString();
+    }
+  }
+
+  /**
+   * total of a directory tree.
+   * @author nodamushi
+   * @see NPaths#diskUsage(Path, int, ForkJoinPool)
+   * @since 1.1.0
+   */
+  public static final class DiskUsage{
+    private final long size;
+    private final long files;
+    private final long directories;
+    private final long lastModified;
+
+    DiskUsage(long size,long files,long directories,long lastModified){
+      this.size = size;
+      this.files = files;
+      this.directories = directories;
+      this.lastModified = lastModified;
+    }
+
+    /**
+     * @return total size of the files(not directories) in the tree.
+     */
+    public long getSize(){
+      return size;
+    }
+
+    /**
+     * @return the number of the files(not directories) in the tree.
+     */
+    public long getFileCount(){
+      return files;
+    }
+
+    /**
+     * @return the number of the directories in the tree,excluding the root of the tree.
+     */
+    public long getDirectoryCount(){
+      return directories;
+    }
+
+    /**
+     * @return the newest last modified time(milli seconds) of the root and the entries in the tree.
+     */
+    public long getLastModified(){
+      return lastModified;
+    }
+
+    @Override public String toString(){
+      return "size="+size+" files="+files+" directories="+directories+" lastModified="+lastModified;
+    }
+  }
+
+  /**
+   * called from {@link #walkFiles(Path, int, int, BatchVisit)} with a batch of files.
+   * @author nodamushi
+   * @since 1.1.0
+   */
+  @FunctionalInterface public static interface BatchVisit{
+    /**
+     * All entries of a batch are the files in the same directory.
+     * @param entries files.The list is unmodifiable and reused for the next batch,so copy it if you need to keep it.
+     * @return FileVisitResult. DON'T return <code>null</code>.
+     * {@link FileVisitResult#SKIP_SIBLINGS} skips the rest of the directory of the batch.
+     * @throws IOException exception
+     */
+    public FileVisitResult visit(List<PathEntry> entries)
+        throws IOException;
+  }
+
+  /**
+   * called from {@link #readAll(Collection, int, Semaphore, Charset, boolean, ReadBytes)} with the contents of a file.
+   * @author nodamushi
+   * @since 1.1.0
+   */
+  @FunctionalInterface public static interface ReadBytes{
+    /**
+     * called on the worker threads,so an implementation must be thread-safe.
+     * @param path file
+     * @param contents the contents from the position to the limit,without the BOM.
+     * A direct buffer is reused after this method returns,so copy it if you need to keep it.
+     * @throws IOException exception.The rest of the reads are cancelled,and the exception is rethrown.
+     */
+    public void read(Path path,ByteBuffer contents)
+        throws IOException;
+  }
+
+  /**
+   * observer of {@link #walkFiles(Path, int, WalkListener, Visit)} and {@link #walkDirectories(Path, int, WalkListener, Visit)}.<br>
+   * The methods are called on the walking thread with primitive values,so an implementation should not block or allocate.
+   * All methods do nothing by default.
+   * @author nodamushi
+   * @see WalkStatistics
+   * @since 1.1.0
+   */
+  public static interface WalkListener{
+    /**
+     * called when a directory has been listed.
+     * @param dir directory
+     * @param depth depth of <code>dir</code>.(start directory is 0)
+     * @param entries the number of the entries of <code>dir</code>.
+     * @param nanos time to open and read <code>dir</code>,excluding the stats,the visits and the subdirectories.
+     */
+    public default void listed(Path dir,int depth,int entries,long nanos){}
+    /**
+     * called when the attributes of an entry have been read.
+     * @param path path
+     * @param nanos time to read the attributes
+     */
+    public default void statted(Path path,long nanos){}
+    /**
+     * called when {@link Visit#visit(Path, BasicFileAttributes)} has returned.
+     * @param path visited path
+     * @param directory true if <code>path</code> is a directory.
+     * @param nanos time spent in {@link Visit#visit(Path, BasicFileAttributes)}
+     */
+    public default void visited(Path path,boolean directory,long nanos){}
+    /**
+     * called when the walk has ended,even if it failed.
+     * @param start start path
+     * @param nanos elapsed time of the walk
+     */
+    public default void finished(Path start,long nanos){}
+  }
+
   private static class F implements FileVisitor<Path>{
     private final Visit v;
     private final boolean d;
     private final int m;
+    private final Path s;
+    private final PathFilter f;
     private int t;
 
     private F(Visit visit,boolean directoryMode,int directoryMaxDepth){
+      this(visit,directoryMode,directoryMaxDepth,null,null);
+    }
+
+    private F(Visit visit,boolean directoryMode,int directoryMaxDepth,Path start,PathFilter filter){
       v=requireNonNull(visit);
       d=directoryMode;
       m=directoryMaxDepth;
+      s=start;
+      f=filter;
       t = -1;
     }
 
     @Override public FileVisitResult preVisitDirectory(Path dir,
         BasicFileAttributes attrs) throws IOException{
-      FileVisitResult ret=d?v.visit(dir,attrs):FileVisitResult.CONTINUE;
+      if(f!=null && !dir.equals(s)){
+        Path r=s.relativize(dir);
+        FileVisitResult ret=d&&f.accept(r)?v.visit(dir,attrs):FileVisitResult.CONTINUE;
+        if(f.skipDirectory(r)){
+          return FileVisitResult.SKIP_SUBTREE;
+        }
+        return depth(ret);
+      }
+      return depth(d?v.visit(dir,attrs):FileVisitResult.CONTINUE);
+    }
+
+    private FileVisitResult depth(FileVisitResult ret){
       if(m < 0){
         return FileVisitResult.CONTINUE;
       }
@@ -867,7 +1152,10 @@ public class NPaths{
 
     @Override public FileVisitResult visitFile(Path file,BasicFileAttributes attrs)
         throws IOException{
-      return d?FileVisitResult.CONTINUE:v.visit(file,attrs);
+      if(d || (f!=null && !file.equals(s) && !f.accept(s.relativize(file)))){
+        return FileVisitResult.CONTINUE;
+      }
+      return v.visit(file,attrs);
     }
 
     @Override public FileVisitResult visitFileFailed(Path file,IOException exc)
@@ -884,6 +1172,75 @@ public class NPaths{
       return FileVisitResult.CONTINUE;
     }
   }
+  private static class BatchF implements FileVisitor<Path>{
+    private final BatchVisit v;
+    private final int m;
+    private final int size;
+    private final ArrayList<PathEntry> batch;
+    private final List<PathEntry> view;
+    private int t;
+
+    private BatchF(BatchVisit visit,int directoryMaxDepth,int batchSize){
+      v=requireNonNull(visit);
+      if(batchSize <= 0){
+        throw new IllegalArgumentException(format("batchSize <= 0.  :%d",batchSize));
+      }
+      m=directoryMaxDepth;
+      size=batchSize;
+      batch=new ArrayList<>(batchSize);
+      view=Collections.unmodifiableList(batch);
+      t = -1;
+    }
+
+    private FileVisitResult flush() throws IOException{
+      if(batch.isEmpty()){
+        return FileVisitResult.CONTINUE;
+      }
+      try{
+        return v.visit(view);
+      }finally{
+        batch.clear();
+      }
+    }
+
+    @Override public FileVisitResult preVisitDirectory(Path dir,
+        BasicFileAttributes attrs) throws IOException{
+      FileVisitResult ret=flush();
+      if(ret==FileVisitResult.TERMINATE || ret==FileVisitResult.SKIP_SIBLINGS){
+        return ret;
+      }
+      if(m < 0){
+        return FileVisitResult.CONTINUE;
+      }
+      if(t!=m){
+        t++;
+        return FileVisitResult.CONTINUE;
+      }else{
+        return FileVisitResult.SKIP_SUBTREE;
+      }
+    }
+
+    @Override public FileVisitResult visitFile(Path file,BasicFileAttributes attrs)
+        throws IOException{
+      batch.add(new PathEntry(file,attrs));
+      return batch.size()==size?flush():FileVisitResult.CONTINUE;
+    }
+
+    @Override public FileVisitResult visitFileFailed(Path file,IOException exc)
+        throws IOException{
+      throw exc;
+    }
+
+    @Override public FileVisitResult postVisitDirectory(Path dir,IOException exc)
+        throws IOException{
+      if(0 <= m){
+        t--;
+      }
+      if(exc!=null) throw exc;
+      return flush()==FileVisitResult.TERMINATE?FileVisitResult.TERMINATE:FileVisitResult.CONTINUE;
+    }
+  }
+
   /**
    * only implements {@link FileVisitor#visitFile(Object, BasicFileAttributes)},and call {@link Files#walkFileTree(Path, FileVisitor)}.<br>
    * @param start start path
@@ -895,6 +1252,11 @@ public class NPaths{
    */
   public static void walkFiles(Path start,int directoryMaxDepth,Visit visitFile)
       throws IOException{
+    WalkListener l = Events.walk(start,false);
+    if(l != null){
+      InstrumentedWalker.walk(start,l,new F(InstrumentedWalker.timed(visitFile,l),false,directoryMaxDepth));
+      return;
+    }
     Files.walkFileTree(start,new F(visitFile,false,directoryMaxDepth));
   }
   /**
@@ -908,9 +1270,751 @@ public class NPaths{
    */
   public static void walkDirectories(Path start,int directoryMaxDepth,Visit visitDirectory)
       throws NullPointerException, IOException{
+    WalkListener l = Events.walk(start,true);
+    if(l != null){
+      InstrumentedWalker.walk(start,l,new F(InstrumentedWalker.timed(visitDirectory,l),true,directoryMaxDepth));
+      return;
+    }
     Files.walkFileTree(start,new F(visitDirectory,true,directoryMaxDepth));
   }
 
+  /**
+   * {@link #walkFiles(Path, int, Visit)} with include and exclude patterns.<br>
+   * A pattern is matched against the path relative to <code>start</code>.
+   * The syntax is "glob:..." or "regex:..." of {@link FileSystem#getPathMatcher(String)},
+   * and a pattern without the prefix is a glob.
+   * The patterns are compiled once per walk.<br>
+   * The walker does not open a directory when no file under it can be visited:
+   * <ul>
+   * <li>the directory matches an exclude pattern("**&#47;node_modules",".git",...),
+   * or an exclude pattern "dir/**" matches the directory as "dir".</li>
+   * <li>no include glob can match the paths under the directory.
+   * e.g. "src/**&#47;*.java" never matches under "lib",and "*.txt" never matches under any directory.</li>
+   * </ul>
+   * Regex include patterns are not analyzed,so they do not prune directories.
+   * @param start start path
+   * @param directoryMaxDepth Max depth of the directory access.If <code>directoryMaxDepth</code> is less than 0, it is considered to be unlimited.
+   * @param includes include patterns.If <code>includes</code> is <code>null</code> or empty,all files are included.
+   * @param excludes exclude patterns.nullable.
+   * @param visitFile called for the included and not excluded files.
+   * @throws IOException I/O exception occur.
+   * @throws NullPointerException <code>path , visitFile</code> are null
+   * @throws IllegalArgumentException a pattern is invalid
+   * @since 1.1.0
+   */
+  public static void walkFiles(Path start,int directoryMaxDepth,
+      Collection<String> includes,Collection<String> excludes,Visit visitFile)
+      throws IOException{
+    Files.walkFileTree(start,new F(visitFile,false,directoryMaxDepth,start,
+        PathFilter.compile(start.getFileSystem(),includes,excludes)));
+  }
+
+  /**
+   * {@link #walkDirectories(Path, int, Visit)} with include and exclude patterns.<br>
+   * <code>start</code> is always visited.
+   * The other directories are visited when they are included and not excluded,
+   * and the walker does not open a directory when no directory under it can be visited.
+   * @param start start path
+   * @param directoryMaxDepth Max depth of the directory access.If <code>directoryMaxDepth</code> is less than 0, it is considered to be unlimited.
+   * @param includes include patterns.If <code>includes</code> is <code>null</code> or empty,all directories are included.
+   * @param excludes exclude patterns.nullable.
+   * @param visitDirectory called for <code>start</code> and the included and not excluded directories.
+   * @throws IOException I/O exception occur.
+   * @throws NullPointerException <code>path , visitDirectory</code> are null
+   * @throws IllegalArgumentException a pattern is invalid
+   * @see #walkFiles(Path, int, Collection, Collection, Visit)
+   * @since 1.1.0
+   */
+  public static void walkDirectories(Path start,int directoryMaxDepth,
+      Collection<String> includes,Collection<String> excludes,Visit visitDirectory)
+      throws IOException{
+    Files.walkFileTree(start,new F(visitDirectory,true,directoryMaxDepth,start,
+        PathFilter.compile(start.getFileSystem(),includes,excludes)));
+  }
+
+  /**
+   * {@link #walkFiles(Path, int, Visit)} with a listing cache.<br>
+   * The directories are listed by <code>cache</code>,so walking the same tree again
+   * costs one stat for each directory whose listing is still valid.
+   * The attributes of a file are the attributes when its directory was listed.
+   * @param start start path
+   * @param directoryMaxDepth Max depth of the directory access.If <code>directoryMaxDepth</code> is less than 0, it is considered to be unlimited.
+   * @param cache listing cache.non null.
+   * @param visitFile called for each file.
+   * @throws IOException I/O exception occur.
+   * @throws NullPointerException <code>path , cache , visitFile</code> are null
+   * @see ListingCache
+   * @since 1.1.0
+   */
+  public static void walkFiles(Path start,int directoryMaxDepth,ListingCache cache,Visit visitFile)
+      throws IOException{
+    requireNonNull(cache,"cache is null").walk(start,directoryMaxDepth,false,visitFile);
+  }
+
+  /**
+   * {@link #walkDirectories(Path, int, Visit)} with a listing cache.
+   * @param start start path
+   * @param directoryMaxDepth Max depth of the directory access.If <code>directoryMaxDepth</code> is less than 0, it is considered to be unlimited.
+   * @param cache listing cache.non null.
+   * @param visitDirectory called for each directory.
+   * @throws IOException I/O exception occur.
+   * @throws NullPointerException <code>path , cache , visitDirectory</code> are null
+   * @see #walkFiles(Path, int, ListingCache, Visit)
+   * @since 1.1.0
+   */
+  public static void walkDirectories(Path start,int directoryMaxDepth,ListingCache cache,Visit visitDirectory)
+      throws IOException{
+    requireNonNull(cache,"cache is null").walk(start,directoryMaxDepth,true,visitDirectory);
+  }
+
+  /**
+   * {@link #walkFiles(Path, int, Visit)} with a listener.<br>
+   * The listener is told the time spent to list the directories,to read the attributes,and in <code>visitFile</code>.
+   * The files are visited exactly as by {@link #walkFiles(Path, int, Visit)},and the walk without a listener is not instrumented at all.
+   * <pre>
+   * WalkStatistics stats = new WalkStatistics();
+   * walkFiles(dir,-1,stats,(file,attrs)-&gt;FileVisitResult.CONTINUE);
+   * System.out.println(stats);
+   * </pre>
+   * @param start start path
+   * @param directoryMaxDepth Max depth of the directory access.If <code>directoryMaxDepth</code> is less than 0, it is considered to be unlimited.
+   * @param listener listener.non null.
+   * @param visitFile called for each file.
+   * @throws IOException I/O exception occur.
+   * @throws NullPointerException <code>path , listener , visitFile</code> are null
+   * @see WalkStatistics
+   * @since 1.1.0
+   */
+  public static void walkFiles(Path start,int directoryMaxDepth,WalkListener listener,Visit visitFile)
+      throws IOException{
+    InstrumentedWalker.walk(start,listener,new F(InstrumentedWalker.timed(visitFile,listener),false,directoryMaxDepth));
+  }
+
+  /**
+   * {@link #walkDirectories(Path, int, Visit)} with a listener.
+   * @param start start path
+   * @param directoryMaxDepth Max depth of the directory access.If <code>directoryMaxDepth</code> is less than 0, it is considered to be unlimited.
+   * @param listener listener.non null.
+   * @param visitDirectory called for each directory.
+   * @throws IOException I/O exception occur.
+   * @throws NullPointerException <code>path , listener , visitDirectory</code> are null
+   * @see #walkFiles(Path, int, WalkListener, Visit)
+   * @since 1.1.0
+   */
+  public static void walkDirectories(Path start,int directoryMaxDepth,WalkListener listener,Visit visitDirectory)
+      throws IOException{
+    InstrumentedWalker.walk(start,listener,new F(InstrumentedWalker.timed(visitDirectory,listener),true,directoryMaxDepth));
+  }
+
+  /**
+   * batch version of {@link #walkFiles(Path, int, Visit)}.<br>
+   * The files are passed to <code>visitFiles</code> in batches of up to <code>batchSize</code> entries.
+   * A batch is flushed when it is full,and before the walker enters or leaves a directory,
+   * so a batch never mixes the files of different directories.
+   * @param start start path
+   * @param directoryMaxDepth Max depth of the directory access.If <code>directoryMaxDepth</code> is less than 0, it is considered to be unlimited.
+   * @param batchSize max size of a batch.
+   * @param visitFiles called with a batch of files.
+   * @throws IOException I/O exception occur.
+   * @throws NullPointerException <code>path , visitFiles</code> are null
+   * @throws IllegalArgumentException <code>batchSize</code> &lt;= 0
+   * @since 1.1.0
+   */
+  public static void walkFiles(Path start,int directoryMaxDepth,int batchSize,BatchVisit visitFiles)
+      throws IOException{
+    BatchF f = new BatchF(visitFiles,directoryMaxDepth,batchSize);
+    Files.walkFileTree(start,f);
+    f.flush();
+  }
+
+  /**
+   * visit every entry(files and directories) under the directory <code>start</code>,without reading the attributes in advance.<br>
+   * The <code>attrs</code> passed to <code>visitEntry</code> reads the attributes from the file system on the first access,
+   * and remembers them.If the visitor needs only the names,no attributes are read for the entries
+   * that the walker does not have to descend into(the entries at <code>directoryMaxDepth</code>,
+   * or the entries the visitor returns {@link FileVisitResult#SKIP_SUBTREE}).<br>
+   * A directory entry is visited before the entries in it.<code>start</code> itself is not visited.
+   * The attributes throw {@link UncheckedIOException} when they cannot be read.
+   * @param start start directory
+   * @param directoryMaxDepth Max depth of the directory access.If <code>directoryMaxDepth</code> is less than 0, it is considered to be unlimited.
+   * @param visitEntry called for each entry.
+   * @throws IOException I/O exception occur.
+   * @throws NullPointerException <code>path , visitEntry</code> are null
+   * @see #walkFiles(Path, int, Visit)
+   * @since 1.1.0
+   */
+  public static void walkEntries(Path start,int directoryMaxDepth,Visit visitEntry)
+      throws IOException{
+    EntryWalker.walk(start,directoryMaxDepth,visitEntry);
+  }
+
+  /**
+   * resumable version of {@link #walkFiles(Path, int, Visit)}.<br>
+   * The entries of each directory are visited in the order of their names,
+   * and the progress is saved to the <code>checkpoint</code> file every <code>checkpointInterval</code> entries.
+   * The checkpoint is also saved when <code>visitFile</code> throws an exception or returns {@link FileVisitResult#TERMINATE}.
+   * If the <code>checkpoint</code> file exists,the walk restarts after the last saved entry.
+   * The <code>checkpoint</code> file is deleted when the walk completes.<br>
+   * An I/O error of a directory or a file does not stop the walk.The errors are collected and returned.
+   * @param start start path
+   * @param directoryMaxDepth Max depth of the directory access.If <code>directoryMaxDepth</code> is less than 0, it is considered to be unlimited.
+   * @param checkpoint checkpoint file.non null.
+   * @param checkpointInterval the number of the entries between two checkpoints.
+   * @param visitFile called from {@link FileVisitor#visitFile(Object, BasicFileAttributes)}
+   * @return the I/O errors of the entries.(key:path of the entry)
+   * @throws IOException <code>start</code> cannot be read,the checkpoint cannot be read or written,
+   * or <code>visitFile</code> throws it.
+   * @throws NullPointerException <code>path , checkpoint , visitFile</code> are null
+   * @throws IllegalArgumentException <code>checkpointInterval</code> &lt;= 0
+   * @since 1.1.0
+   */
+  public static Map<Path,IOException> walkFilesResumable(Path start,int directoryMaxDepth,
+      Path checkpoint,int checkpointInterval,Visit visitFile)
+      throws IOException{
+    return ResumableWalker.walk(start,directoryMaxDepth,false,checkpoint,checkpointInterval,visitFile);
+  }
+
+  /**
+   * resumable version of {@link #walkDirectories(Path, int, Visit)}.
+   * @param start start path
+   * @param directoryMaxDepth Max depth of the directory access.If <code>directoryMaxDepth</code> is less than 0, it is considered to be unlimited.
+   * @param checkpoint checkpoint file.non null.
+   * @param checkpointInterval the number of the entries between two checkpoints.
+   * @param visitDirectory called from {@link FileVisitor#preVisitDirectory(Object, BasicFileAttributes)}
+   * @return the I/O errors of the entries.(key:path of the entry)
+   * @throws IOException <code>start</code> cannot be read,the checkpoint cannot be read or written,
+   * or <code>visitDirectory</code> throws it.
+   * @throws NullPointerException <code>path , checkpoint , visitDirectory</code> are null
+   * @throws IllegalArgumentException <code>checkpointInterval</code> &lt;= 0
+   * @see #walkFilesResumable(Path, int, Path, int, Visit)
+   * @since 1.1.0
+   */
+  public static Map<Path,IOException> walkDirectoriesResumable(Path start,int directoryMaxDepth,
+      Path checkpoint,int checkpointInterval,Visit visitDirectory)
+      throws IOException{
+    return ResumableWalker.walk(start,directoryMaxDepth,true,checkpoint,checkpointInterval,visitDirectory);
+  }
+
+  /**
+   * parallel version of {@link #walkFiles(Path, int, Visit)}.
+   * Each directory is listed by its own {@link ForkJoinTask},and idle workers steal the remaining directories.<br>
+   * <code>visitFile</code> is called concurrently from the worker threads of <code>pool</code>,
+   * and the order of the calls is undefined.
+   * {@link FileVisitResult#SKIP_SIBLINGS} skips the rest of the directory,
+   * {@link FileVisitResult#TERMINATE} stops all tasks.
+   * @param start start path
+   * @param directoryMaxDepth Max depth of the directory access.If <code>directoryMaxDepth</code> is less than 0, it is considered to be unlimited.
+   * @param pool fork join pool.If <code>pool</code> is <code>null</code>,{@link ForkJoinPool#commonPool()} is used.
+   * @param visitFile thread-safe visitor.
+   * @throws IOException I/O exception occur.
+   * @throws NullPointerException <code>path , visitFile</code> are null
+   * @since 1.1.0
+   */
+  public static void walkFilesParallel(Path start,int directoryMaxDepth,ForkJoinPool pool,Visit visitFile)
+      throws IOException{
+    ParallelWalker.walk(start,directoryMaxDepth,false,pool,visitFile);
+  }
+
+  /**
+   * parallel version of {@link #walkFiles(Path, int, Visit)}.
+   * A new {@link ForkJoinPool} is created for this walk,and it is shut down when the walk ends.
+   * @param start start path
+   * @param directoryMaxDepth Max depth of the directory access.If <code>directoryMaxDepth</code> is less than 0, it is considered to be unlimited.
+   * @param parallelism the number of worker threads.
+   * For the high latency storage,a value larger than the number of cores can keep more requests in flight.
+   * @param visitFile thread-safe visitor.
+   * @throws IOException I/O exception occur.
+   * @throws NullPointerException <code>path , visitFile</code> are null
+   * @throws IllegalArgumentException <code>parallelism</code> &lt;= 0
+   * @see #walkFilesParallel(Path, int, ForkJoinPool, Visit)
+   * @since 1.1.0
+   */
+  public static void walkFilesParallel(Path start,int directoryMaxDepth,int parallelism,Visit visitFile)
+      throws IOException{
+    ParallelWalker.walk(start,directoryMaxDepth,false,parallelism,visitFile);
+  }
+
+  /**
+   * parallel version of {@link #walkDirectories(Path, int, Visit)}.
+   * <code>visitDirectory</code> is called concurrently from the worker threads of <code>pool</code>,
+   * and the order of the calls is undefined,except that a directory is always visited before its children.
+   * @param start start path
+   * @param directoryMaxDepth Max depth of the directory access.If <code>directoryMaxDepth</code> is less than 0, it is considered to be unlimited.
+   * @param pool fork join pool.If <code>pool</code> is <code>null</code>,{@link ForkJoinPool#commonPool()} is used.
+   * @param visitDirectory thread-safe visitor.
+   * @throws IOException I/O exception occur.
+   * @throws NullPointerException <code>path , visitDirectory</code> are null
+   * @see #walkFilesParallel(Path, int, ForkJoinPool, Visit)
+   * @since 1.1.0
+   */
+  public static void walkDirectoriesParallel(Path start,int directoryMaxDepth,ForkJoinPool pool,Visit visitDirectory)
+      throws IOException{
+    ParallelWalker.walk(start,directoryMaxDepth,true,pool,visitDirectory);
+  }
+
+  /**
+   * parallel version of {@link #walkDirectories(Path, int, Visit)}.
+   * A new {@link ForkJoinPool} is created for this walk,and it is shut down when the walk ends.
+   * @param start start path
+   * @param directoryMaxDepth Max depth of the directory access.If <code>directoryMaxDepth</code> is less than 0, it is considered to be unlimited.
+   * @param parallelism the number of worker threads.
+   * @param visitDirectory thread-safe visitor.
+   * @throws IOException I/O exception occur.
+   * @throws NullPointerException <code>path , visitDirectory</code> are null
+   * @throws IllegalArgumentException <code>parallelism</code> &lt;= 0
+   * @see #walkDirectoriesParallel(Path, int, ForkJoinPool, Visit)
+   * @since 1.1.0
+   */
+  public static void walkDirectoriesParallel(Path start,int directoryMaxDepth,int parallelism,Visit visitDirectory)
+      throws IOException{
+    ParallelWalker.walk(start,directoryMaxDepth,true,parallelism,visitDirectory);
+  }
+
+  /**
+   * concurrent version of {@link #walkFiles(Path, int, Visit)} for the high latency storage(NFS,FUSE,...).
+   * Each directory is listed on its own task,and at most <code>maxConcurrency</code> directories are listed at the same time.<br>
+   * On Java 21 or later,each task runs on its own virtual thread.
+   * On older runtimes,the tasks run on a pool of <code>maxConcurrency</code> platform threads.<br>
+   * <code>visitFile</code> is called concurrently,and the order of the calls is undefined.
+   * @param start start path
+   * @param directoryMaxDepth Max depth of the directory access.If <code>directoryMaxDepth</code> is less than 0, it is considered to be unlimited.
+   * @param maxConcurrency the max number of the directories listed at the same time.
+   * @param visitFile thread-safe visitor.
+   * @throws IOException I/O exception occur.
+   * @throws NullPointerException <code>path , visitFile</code> are null
+   * @throws IllegalArgumentException <code>maxConcurrency</code> &lt;= 0
+   * @see #walkFilesParallel(Path, int, int, Visit)
+   * @since 1.1.0
+   */
+  public static void walkFilesConcurrent(Path start,int directoryMaxDepth,int maxConcurrency,Visit visitFile)
+      throws IOException{
+    ConcurrentWalker.walk(start,directoryMaxDepth,false,maxConcurrency,visitFile);
+  }
+
+  /**
+   * concurrent version of {@link #walkDirectories(Path, int, Visit)} for the high latency storage.
+   * @param start start path
+   * @param directoryMaxDepth Max depth of the directory access.If <code>directoryMaxDepth</code> is less than 0, it is considered to be unlimited.
+   * @param maxConcurrency the max number of the directories listed at the same time.
+   * @param visitDirectory thread-safe visitor.
+   * @throws IOException I/O exception occur.
+   * @throws NullPointerException <code>path , visitDirectory</code> are null
+   * @throws IllegalArgumentException <code>maxConcurrency</code> &lt;= 0
+   * @see #walkFilesConcurrent(Path, int, int, Visit)
+   * @since 1.1.0
+   */
+  public static void walkDirectoriesConcurrent(Path start,int directoryMaxDepth,int maxConcurrency,Visit visitDirectory)
+      throws IOException{
+    ConcurrentWalker.walk(start,directoryMaxDepth,true,maxConcurrency,visitDirectory);
+  }
+
+  /**
+   * compute the disk usage of every directory in parallel.<br>
+   * The whole tree is walked,and each reported directory has the totals of all entries under it.
+   * Only the directories whose depth is less than or equal to <code>reportMaxDepth</code> are reported,
+   * like <code>du --max-depth</code>.
+   * If <code>start</code> is a file,the map has only <code>start</code>.
+   * The symbolic links are not followed,and the size of a link is the size of the link itself.
+   * @param start start path
+   * @param reportMaxDepth Max depth of the reported directories.If <code>reportMaxDepth</code> is less than 0, it is considered to be unlimited.
+   * @param pool fork join pool.If <code>pool</code> is <code>null</code>,{@link ForkJoinPool#commonPool()} is used.
+   * @return map of the directories and their totals.
+   * @throws IOException I/O exception occur.
+   * @throws NullPointerException <code>start</code> is null
+   * @since 1.1.0
+   */
+  public static Map<Path,DiskUsage> diskUsage(Path start,int reportMaxDepth,ForkJoinPool pool)
+      throws IOException{
+    return DiskUsageWalker.walk(start,reportMaxDepth,pool);
+  }
+
+  /**
+   * {@link #diskUsage(Path, int, ForkJoinPool)} on a new pool.
+   * @param start start path
+   * @param reportMaxDepth Max depth of the reported directories.If <code>reportMaxDepth</code> is less than 0, it is considered to be unlimited.
+   * @param parallelism parallelism of the pool
+   * @return map of the directories and their totals.
+   * @throws IOException I/O exception occur.
+   * @throws NullPointerException <code>start</code> is null
+   * @throws IllegalArgumentException <code>parallelism</code> &lt;= 0
+   * @since 1.1.0
+   */
+  public static Map<Path,DiskUsage> diskUsage(Path start,int reportMaxDepth,int parallelism)
+      throws IOException{
+    return DiskUsageWalker.walk(start,reportMaxDepth,parallelism);
+  }
+
+  /**
+   * find the files which have the same contents.<br>
+   * The files are grouped by size first,then by the SHA-256 of their first and last 64 KiB(memory-mapped),
+   * and only the groups which still collide are hashed fully.
+   * Each stage runs on <code>pool</code>.
+   * Empty files and files other than regular files are ignored.
+   * @param start start path
+   * @param directoryMaxDepth Max depth of the directory access.If <code>directoryMaxDepth</code> is less than 0, it is considered to be unlimited.
+   * @param pool fork join pool.If <code>pool</code> is <code>null</code>,{@link ForkJoinPool#commonPool()} is used.
+   * @return groups of the same files.Each group has 2 or more files,and is sorted.
+   * @throws IOException I/O exception occur.
+   * @throws NullPointerException <code>start</code> is null
+   * @since 1.1.0
+   */
+  public static List<List<Path>> findDuplicates(Path start,int directoryMaxDepth,ForkJoinPool pool)
+      throws IOException{
+    return DuplicateFinder.find(start,directoryMaxDepth,pool);
+  }
+
+  /**
+   * {@link #findDuplicates(Path, int, ForkJoinPool)} on a new pool.
+   * @param start start path
+   * @param directoryMaxDepth Max depth of the directory access.If <code>directoryMaxDepth</code> is less than 0, it is considered to be unlimited.
+   * @param parallelism parallelism of the pool
+   * @return groups of the same files.Each group has 2 or more files,and is sorted.
+   * @throws IOException I/O exception occur.
+   * @throws NullPointerException <code>start</code> is null
+   * @throws IllegalArgumentException <code>parallelism</code> &lt;= 0
+   * @since 1.1.0
+   */
+  public static List<List<Path>> findDuplicates(Path start,int directoryMaxDepth,int parallelism)
+      throws IOException{
+    ForkJoinPool pool = new ForkJoinPool(parallelism);
+    try{
+      return DuplicateFinder.find(start,directoryMaxDepth,pool);
+    }finally{
+      pool.shutdown();
+    }
+  }
+
+  /**
+   * select the N largest,newest and oldest files in one walk.
+   * @param start start path
+   * @param directoryMaxDepth Max depth of the directory access.If <code>directoryMaxDepth</code> is less than 0, it is considered to be unlimited.
+   * @param n the number of the files of each criterion.
+   * @return selected files
+   * @throws IOException I/O exception occur.
+   * @throws NullPointerException <code>start</code> is null
+   * @throws IllegalArgumentException <code>n</code> &lt;= 0
+   * @see TopFiles
+   * @since 1.1.0
+   */
+  public static TopFiles topFiles(Path start,int directoryMaxDepth,int n)
+      throws IOException{
+    TopFiles top = new TopFiles(n);
+    walkFiles(start,directoryMaxDepth,(file,attrs)->{
+      top.offer(file,attrs);
+      return FileVisitResult.CONTINUE;
+    });
+    return top;
+  }
+
+  /**
+   * parallel version of {@link #topFiles(Path, int, int)}.
+   * Each worker thread selects the files into its own heaps,and the heaps are merged after the walk.
+   * @param start start path
+   * @param directoryMaxDepth Max depth of the directory access.If <code>directoryMaxDepth</code> is less than 0, it is considered to be unlimited.
+   * @param n the number of the files of each criterion.
+   * @param pool fork join pool.If <code>pool</code> is <code>null</code>,{@link ForkJoinPool#commonPool()} is used.
+   * @return selected files
+   * @throws IOException I/O exception occur.
+   * @throws NullPointerException <code>start</code> is null
+   * @throws IllegalArgumentException <code>n</code> &lt;= 0
+   * @see TopFiles
+   * @since 1.1.0
+   */
+  public static TopFiles topFiles(Path start,int directoryMaxDepth,int n,ForkJoinPool pool)
+      throws IOException{
+    TopFiles top = new TopFiles(n);
+    Map<Thread,TopFiles> local = new ConcurrentHashMap<>();
+    ParallelWalker.walk(start,directoryMaxDepth,false,pool,(file,attrs)->{
+      TopFiles t = local.get(Thread.currentThread());
+      if(t == null){
+        t = new TopFiles(n);
+        local.put(Thread.currentThread(),t);
+      }
+      t.offer(file,attrs);
+      return FileVisitResult.CONTINUE;
+    });
+    for(TopFiles t:local.values()){
+      top.merge(t);
+    }
+    return top;
+  }
+
+  /**
+   * split a tree into <code>n</code> disjoint work units of about the same number of entries.<br>
+   * The directories from <code>start</code> down to <code>sampleDepth</code> levels are listed in the order of the names,
+   * and a directory which was not listed is estimated to be as large as the average listed directory.
+   * A large listed directory is split into its subdirectories and the slices of its entries by name.
+   * The result depends only on the tree,so every process computes the same units from the same tree.
+   * {@link WorkUnit#walkFiles(Visit)} of all units visits the same files as {@link #walkFiles(Path, int, Visit)}.
+   * @param start start path
+   * @param directoryMaxDepth Max depth of the directory access.If <code>directoryMaxDepth</code> is less than 0, it is considered to be unlimited.
+   * @param n the number of the units.
+   * @param sampleDepth the number of the directory levels listed.
+   * @return <code>n</code> units.Some of them may be empty.
+   * @throws IOException I/O exception occur.
+   * @throws NullPointerException <code>start</code> is null
+   * @throws IllegalArgumentException <code>n</code> &lt;= 0 or <code>sampleDepth</code> &lt;= 0
+   * @see WorkUnit
+   * @since 1.1.0
+   */
+  public static List<WorkUnit> partition(Path start,int directoryMaxDepth,int n,int sampleDepth)
+      throws IOException{
+    return WorkUnit.partition(start,directoryMaxDepth,n,sampleDepth);
+  }
+
+  /**
+   * {@link #walkFiles(Path, int, Visit)} which follows the symbolic links.<br>
+   * Each directory is listed once:a directory whose {@link BasicFileAttributes#fileKey()} was already listed
+   * (a cycle,or a directory reached by another link) is skipped.
+   * When <code>directoryMaxDepth</code> &gt;= 0,a directory reached again at a shallower depth is listed again,
+   * so the files of the directory may be visited twice unless <code>uniqueFiles</code> is true.
+   * The keys are kept as (device,inode) pairs of longs in an open addressing table,not as objects.
+   * A broken link is visited with the attributes of the link.
+   * @param start start path
+   * @param directoryMaxDepth Max depth of the directory access.If <code>directoryMaxDepth</code> is less than 0, it is considered to be unlimited.
+   * @param uniqueFiles If <code>true</code>,a file which has 2 or more names(hard links,symbolic links) is visited once.
+   * @param visitFile called for each file.
+   * @throws IOException I/O exception occur.
+   * @throws NullPointerException <code>path , visitFile</code> are null
+   * @since 1.1.0
+   */
+  public static void walkFilesFollowLinks(Path start,int directoryMaxDepth,boolean uniqueFiles,Visit visitFile)
+      throws IOException{
+    LinkWalker.walk(start,directoryMaxDepth,false,uniqueFiles,visitFile);
+  }
+
+  /**
+   * {@link #walkDirectories(Path, int, Visit)} which follows the symbolic links.
+   * A directory is visited whenever it is walked,so a directory reached by 2 or more names is visited again
+   * if it was not listed(at the depth limit,or skipped by <code>visitDirectory</code>) or if it is reached at a shallower depth.
+   * @param start start path
+   * @param directoryMaxDepth Max depth of the directory access.If <code>directoryMaxDepth</code> is less than 0, it is considered to be unlimited.
+   * @param visitDirectory called for each directory.
+   * @throws IOException I/O exception occur.
+   * @throws NullPointerException <code>path , visitDirectory</code> are null
+   * @see #walkFilesFollowLinks(Path, int, boolean, Visit)
+   * @since 1.1.0
+   */
+  public static void walkDirectoriesFollowLinks(Path start,int directoryMaxDepth,Visit visitDirectory)
+      throws IOException{
+    LinkWalker.walk(start,directoryMaxDepth,true,false,visitDirectory);
+  }
+
+  /**
+   * breadth-first version of {@link #walkFiles(Path, int, Visit)}.<br>
+   * The walker opens only one directory at a time,and visits the files of a directory before any file of its subdirectories.
+   * The directories waiting to be walked are kept in memory up to <code>maxFrontier</code>,
+   * and the rest are spilled to a temporary file,
+   * so the heap and the file descriptors do not grow with the width or the depth of the tree.<br>
+   * {@link FileVisitResult#SKIP_SIBLINGS} skips the rest of the directory being listed.
+   * @param start start path
+   * @param directoryMaxDepth Max depth of the directory access.If <code>directoryMaxDepth</code> is less than 0, it is considered to be unlimited.
+   * @param maxFrontier max number of the directories kept in memory.
+   * @param visitFile called for each file.
+   * @throws IOException I/O exception occur.
+   * @throws NullPointerException <code>path , visitFile</code> are null
+   * @throws IllegalArgumentException <code>maxFrontier</code> &lt;= 0
+   * @since 1.1.0
+   */
+  public static void walkFilesBreadthFirst(Path start,int directoryMaxDepth,int maxFrontier,Visit visitFile)
+      throws IOException{
+    FrontierWalker.walk(start,directoryMaxDepth,false,maxFrontier,null,visitFile);
+  }
+
+  /**
+   * breadth-first version of {@link #walkDirectories(Path, int, Visit)}.<br>
+   * A directory is visited when its parent is listed.
+   * @param start start path
+   * @param directoryMaxDepth Max depth of the directory access.If <code>directoryMaxDepth</code> is less than 0, it is considered to be unlimited.
+   * @param maxFrontier max number of the directories kept in memory.
+   * @param visitDirectory called for each directory.
+   * @throws IOException I/O exception occur.
+   * @throws NullPointerException <code>path , visitDirectory</code> are null
+   * @throws IllegalArgumentException <code>maxFrontier</code> &lt;= 0
+   * @see #walkFilesBreadthFirst(Path, int, int, Visit)
+   * @since 1.1.0
+   */
+  public static void walkDirectoriesBreadthFirst(Path start,int directoryMaxDepth,int maxFrontier,Visit visitDirectory)
+      throws IOException{
+    FrontierWalker.walk(start,directoryMaxDepth,true,maxFrontier,null,visitDirectory);
+  }
+
+  /**
+   * best-first version of {@link #walkFiles(Path, int, Visit)}.<br>
+   * The walker lists the smallest directory of <code>order</code> next.
+   * When the directories exceed <code>maxFrontier</code>,the worse half is spilled to a temporary file,
+   * and they are loaded again after the directories in memory are exhausted.
+   * So the order is exact while the frontier fits in memory.
+   * @param start start path
+   * @param directoryMaxDepth Max depth of the directory access.If <code>directoryMaxDepth</code> is less than 0, it is considered to be unlimited.
+   * @param maxFrontier max number of the directories kept in memory.
+   * @param order order of the directories.non null.
+   * @param visitFile called for each file.
+   * @throws IOException I/O exception occur.
+   * @throws NullPointerException <code>path , order , visitFile</code> are null
+   * @throws IllegalArgumentException <code>maxFrontier</code> &lt;= 0
+   * @see #walkFilesBreadthFirst(Path, int, int, Visit)
+   * @since 1.1.0
+   */
+  public static void walkFilesBestFirst(Path start,int directoryMaxDepth,int maxFrontier,
+      Comparator<? super Path> order,Visit visitFile)
+      throws IOException{
+    FrontierWalker.walk(start,directoryMaxDepth,false,maxFrontier,requireNonNull(order,"order is null"),visitFile);
+  }
+
+  /**
+   * best-first version of {@link #walkDirectories(Path, int, Visit)}.
+   * @param start start path
+   * @param directoryMaxDepth Max depth of the directory access.If <code>directoryMaxDepth</code> is less than 0, it is considered to be unlimited.
+   * @param maxFrontier max number of the directories kept in memory.
+   * @param order order of the directories.non null.
+   * @param visitDirectory called for each directory.
+   * @throws IOException I/O exception occur.
+   * @throws NullPointerException <code>path , order , visitDirectory</code> are null
+   * @throws IllegalArgumentException <code>maxFrontier</code> &lt;= 0
+   * @see #walkFilesBestFirst(Path, int, int, Comparator, Visit)
+   * @since 1.1.0
+   */
+  public static void walkDirectoriesBestFirst(Path start,int directoryMaxDepth,int maxFrontier,
+      Comparator<? super Path> order,Visit visitDirectory)
+      throws IOException{
+    FrontierWalker.walk(start,directoryMaxDepth,true,maxFrontier,requireNonNull(order,"order is null"),visitDirectory);
+  }
+
+  /**
+   * read all bytes of the files concurrently.
+   * On Java 21 or later,each file is read on its own virtual thread.
+   * @param paths files.non null.
+   * @param maxConcurrency the max number of the files read at the same time.
+   * @return map of the path and the bytes.The iteration order is the same as <code>paths</code>.
+   * @throws IOException I/O exception occur.
+   * @throws NullPointerException <code>paths</code> is null or contains <code>null</code>
+   * @throws IllegalArgumentException <code>maxConcurrency</code> &lt;= 0
+   * @see #walkFilesConcurrent(Path, int, int, Visit)
+   * @since 1.1.0
+   */
+  public static Map<Path,byte[]> readAllBytes(Collection<? extends Path> paths,int maxConcurrency)
+      throws IOException{
+    return ConcurrentReader.readAllBytes(paths,maxConcurrency);
+  }
+
+  /**
+   * read the files into {@link ByteBuffer}s concurrently,and pass each buffer to <code>callback</code> as soon as it is read.<br>
+   * At most <code>maxConcurrency</code> files are read at the same time,
+   * and a file is open only while a permit of <code>fileBudget</code> is taken,
+   * so the readers sharing a semaphore do not exceed the open file limit together.
+   * When <code>charset</code> is UTF-8/UTF-16/UTF-16BE/UTF-16LE,the BOM is skipped like {@link #newBufferedReader(InputStream, Charset)}.
+   * On Java 21 or later,each file is read on its own virtual thread.
+   * @param paths files.non null.
+   * @param maxConcurrency the max number of the files read at the same time.
+   * @param fileBudget permits of the open files.If <code>fileBudget</code> is <code>null</code>,only <code>maxConcurrency</code> limits the open files.
+   * @param charset charset of the files to skip the BOM.If <code>charset</code> is <code>null</code>,the BOM is not skipped.
+   * @param direct If <code>true</code>,the files are read into pooled direct buffers,
+   * otherwise into new heap buffers which <code>callback</code> can keep.
+   * @param callback called for each file.
+   * @throws IOException I/O exception occur.
+   * @throws NullPointerException <code>paths , callback</code> are null or <code>paths</code> contains <code>null</code>
+   * @throws IllegalArgumentException <code>maxConcurrency</code> &lt;= 0
+   * @see #readAllBytes(Collection, int)
+   * @since 1.1.0
+   */
+  public static void readAll(Collection<? extends Path> paths,int maxConcurrency,Semaphore fileBudget,
+      Charset charset,boolean direct,ReadBytes callback)
+      throws IOException{
+    ConcurrentReader.readAll(requireNonNull(paths,"paths is null").iterator(),maxConcurrency,fileBudget,charset,direct,callback);
+  }
+
+  /**
+   * {@link #readAll(Collection, int, Semaphore, Charset, boolean, ReadBytes)} of a stream of paths,
+   * such as {@link #walkFileStream(Path, int)}.
+   * The stream is consumed as the reads complete,not collected in advance,and is not closed.
+   * @param paths files.non null.
+   * @param maxConcurrency the max number of the files read at the same time.
+   * @param fileBudget permits of the open files.If <code>fileBudget</code> is <code>null</code>,only <code>maxConcurrency</code> limits the open files.
+   * @param charset charset of the files to skip the BOM.If <code>charset</code> is <code>null</code>,the BOM is not skipped.
+   * @param direct If <code>true</code>,the files are read into pooled direct buffers,
+   * otherwise into new heap buffers which <code>callback</code> can keep.
+   * @param callback called for each file.
+   * @throws IOException I/O exception occur.
+   * @throws NullPointerException <code>paths , callback</code> are null or <code>paths</code> contains <code>null</code>
+   * @throws IllegalArgumentException <code>maxConcurrency</code> &lt;= 0
+   * @since 1.1.0
+   */
+  public static void readAll(Stream<? extends Path> paths,int maxConcurrency,Semaphore fileBudget,
+      Charset charset,boolean direct,ReadBytes callback)
+      throws IOException{
+    ConcurrentReader.readAll(requireNonNull(paths,"paths is null").iterator(),maxConcurrency,fileBudget,charset,direct,callback);
+  }
+
+  /**
+   * create a lazy {@link Stream} of the files under <code>start</code>.<br>
+   * The order and the depth are the same as {@link #walkFiles(Path, int, Visit)}.
+   * A directory is opened only when the stream pulls the entries of it,
+   * so short-circuiting operations such as <code>findFirst</code> or <code>limit</code> stop the I/O early.<br>
+   * The returned stream holds open directories.Close it with the try-with-resources statement.
+   * An {@link IOException} is thrown as {@link UncheckedIOException}.
+   * @param start start path.non null.
+   * @param directoryMaxDepth Max depth of the directory access.If <code>directoryMaxDepth</code> is less than 0, it is considered to be unlimited.
+   * @return {@link Stream} of files
+   * @throws NullPointerException <code>start</code> is <code>null</code>
+   * @see #walkFiles(Path, int, Visit)
+   * @since 1.1.0
+   */
+  public static Stream<Path> walkFileStream(Path start,int directoryMaxDepth)
+      throws NullPointerException{
+    return walkFileEntries(start,directoryMaxDepth).map(PathEntry::getPath);
+  }
+
+  /**
+   * create a lazy {@link Stream} of the files and their attributes under <code>start</code>.
+   * @param start start path.non null.
+   * @param directoryMaxDepth Max depth of the directory access.If <code>directoryMaxDepth</code> is less than 0, it is considered to be unlimited.
+   * @return {@link Stream} of files
+   * @throws NullPointerException <code>start</code> is <code>null</code>
+   * @see #walkFileStream(Path, int)
+   * @since 1.1.0
+   */
+  public static Stream<PathEntry> walkFileEntries(Path start,int directoryMaxDepth)
+      throws NullPointerException{
+    return walkStream(start,false,directoryMaxDepth);
+  }
+
+  /**
+   * create a lazy {@link Stream} of the directories under <code>start</code>(include <code>start</code>).<br>
+   * The order and the depth are the same as {@link #walkDirectories(Path, int, Visit)}.
+   * The returned stream holds open directories.Close it with the try-with-resources statement.
+   * @param start start path.non null.
+   * @param directoryMaxDepth Max depth of the directory access.If <code>directoryMaxDepth</code> is less than 0, it is considered to be unlimited.
+   * @return {@link Stream} of directories
+   * @throws NullPointerException <code>start</code> is <code>null</code>
+   * @see #walkFileStream(Path, int)
+   * @since 1.1.0
+   */
+  public static Stream<Path> walkDirectoryStream(Path start,int directoryMaxDepth)
+      throws NullPointerException{
+    return walkDirectoryEntries(start,directoryMaxDepth).map(PathEntry::getPath);
+  }
+
+  /**
+   * create a lazy {@link Stream} of the directories and their attributes under <code>start</code>(include <code>start</code>).
+   * @param start start path.non null.
+   * @param directoryMaxDepth Max depth of the directory access.If <code>directoryMaxDepth</code> is less than 0, it is considered to be unlimited.
+   * @return {@link Stream} of directories
+   * @throws NullPointerException <code>start</code> is <code>null</code>
+   * @see #walkFileStream(Path, int)
+   * @since 1.1.0
+   */
+  public static Stream<PathEntry> walkDirectoryEntries(Path start,int directoryMaxDepth)
+      throws NullPointerException{
+    return walkStream(start,true,directoryMaxDepth);
+  }
+
+  private static Stream<PathEntry> walkStream(Path start,boolean directoryMode,int directoryMaxDepth){
+    WalkIterator i = new WalkIterator(start,directoryMode,directoryMaxDepth);
+    return StreamSupport.stream(Spliterators.spliteratorUnknownSize(i,
+        Spliterator.NONNULL|Spliterator.DISTINCT),false).onClose(i::close);
+  }
+
   /**
    * Path Iterator Option.
    * @author nodamushi
@@ -986,6 +2090,34 @@ public class NPaths{
         o==ItrOption.EXIST_ONLY,startIndex);
   }
 
+  /**
+   * {@link #iterator(Path, int, ItrOption)} which tests the existence of the paths by <code>cache</code>.<br>
+   * With {@link ItrOption#EXIST_ONLY},a path exists if the cached listing of its parent contains it,
+   * so iterating many paths under the same directories lists each directory once.
+   * The other options do not use <code>cache</code>.
+   * @param path path.if <code>path</code> is null,this function return empty Iterable(not return <code>null</code>).
+   * @param startIndex first index of iterator.(* greater than or equal to 0.)
+   * @param option iterator type.if <code>option</code> is <code>null</code>, {@link ItrOption#FULL_PATH} is used.
+   * @param cache listing cache.non null.
+   * @return {@link Iterable}
+   * @throws IllegalArgumentException startIndex &lt; 0
+   * @throws NullPointerException <code>cache</code> is <code>null</code>
+   * @see ListingCache#exists(Path)
+   * @since 1.1.0
+   */
+  public static Iterable<Path> iterator(Path path,int startIndex,ItrOption option,ListingCache cache)
+      throws IllegalArgumentException,NullPointerException{
+    if(startIndex < 0){
+      throw new IllegalArgumentException(
+          format("startIndex < 0.  :%d",startIndex));
+    }
+    requireNonNull(cache,"cache is null");
+    ItrOption o = option == null?ItrOption.FULL_PATH:option;
+    return ()->new PItr(path,
+        o!=ItrOption.NAME_ONLY,
+        o==ItrOption.EXIST_ONLY,startIndex,cache);
+  }
+
   /**
    * create path {@link Iterable}
    * @param path path.if <code>path</code> is <code>null</code>,this function return empty Iterable(not return <code>null</code>).
@@ -1105,6 +2237,10 @@ public class NPaths{
     private int index;
 
     private PItr(Path path,boolean fullPath,boolean existCheck,int start){
+      this(path,fullPath,existCheck,start,null);
+    }
+
+    private PItr(Path path,boolean fullPath,boolean existCheck,int start,ListingCache cache){
       this.path = path;
       this.fullPath = fullPath;
       if(path == null){
@@ -1116,7 +2252,7 @@ public class NPaths{
         if(existCheck){
           for(int i=0;i!=maxsize;i++){
             Path p=subpath(i);
-            if(!Files.exists(p)){
+            if(!Events.exists(p,cache)){
               maxsize = i;
               break;
             }
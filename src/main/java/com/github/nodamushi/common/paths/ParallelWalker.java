@@ -0,0 +1,123 @@
+package com.github.nodamushi.common.paths;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.github.nodamushi.common.paths.NPaths.Visit;
+
+/**
+ * fork-join walker. one task per directory.
+ * @author nodamushi
+ * @since 1.1.0
+ */
+final class ParallelWalker{
+  private final Visit v;
+  private final boolean d;
+  private final int m;
+  private final AtomicReference<IOException> error = new AtomicReference<>();
+  private volatile boolean terminated;
+
+  private ParallelWalker(Visit visit,boolean directoryMode,int directoryMaxDepth){
+    v=requireNonNull(visit);
+    d=directoryMode;
+    m=directoryMaxDepth;
+  }
+
+  static void walk(Path start,int directoryMaxDepth,boolean directoryMode,ForkJoinPool pool,Visit visit)
+      throws IOException{
+    requireNonNull(start,"start is null");
+    ParallelWalker w = new ParallelWalker(visit,directoryMode,directoryMaxDepth);
+    BasicFileAttributes attrs = Files.readAttributes(start,BasicFileAttributes.class,LinkOption.NOFOLLOW_LINKS);
+    if(!attrs.isDirectory()){
+      if(!directoryMode){
+        visit.visit(start,attrs);
+      }
+      return;
+    }
+    if(directoryMode && visit.visit(start,attrs)!=FileVisitResult.CONTINUE){
+      return;
+    }
+    (pool==null?ForkJoinPool.commonPool():pool).invoke(w.new Task(start,0));
+    IOException e = w.error.get();
+    if(e!=null) throw e;
+  }
+
+  static void walk(Path start,int directoryMaxDepth,boolean directoryMode,int parallelism,Visit visit)
+      throws IOException{
+    ForkJoinPool pool = new ForkJoinPool(parallelism);
+    try{
+      walk(start,directoryMaxDepth,directoryMode,pool,visit);
+    }finally{
+      pool.shutdown();
+    }
+  }
+
+  private boolean descend(int depth){
+    return m < 0 || depth <= m;
+  }
+
+  private void fail(IOException e){
+    error.compareAndSet(null,e);
+    terminated = true;
+  }
+
+  private final class Task extends RecursiveAction{
+    private static final long serialVersionUID = 1L;
+    private final Path dir;
+    private final int depth;
+
+    private Task(Path dir,int depth){
+      this.dir = dir;
+      this.depth = depth;
+    }
+
+    @Override protected void compute(){
+      List<Task> tasks = new ArrayList<>();
+      try(DirectoryStream<Path> stream = Files.newDirectoryStream(dir)){
+        for(Path p:stream){
+          if(terminated){
+            break;
+          }
+          BasicFileAttributes attrs = Files.readAttributes(p,BasicFileAttributes.class,LinkOption.NOFOLLOW_LINKS);
+          FileVisitResult ret;
+          if(attrs.isDirectory()){
+            ret = d?v.visit(p,attrs):FileVisitResult.CONTINUE;
+            if(ret==FileVisitResult.CONTINUE && descend(depth+1)){
+              Task t = new Task(p,depth+1);
+              t.fork();
+              tasks.add(t);
+            }
+          }else{
+            ret = d?FileVisitResult.CONTINUE:v.visit(p,attrs);
+          }
+          if(ret==FileVisitResult.TERMINATE){
+            terminated = true;
+            break;
+          }else if(ret==FileVisitResult.SKIP_SIBLINGS){
+            break;
+          }
+        }
+      }catch(IOException e){
+        fail(e);
+      }catch(DirectoryIteratorException e){
+        fail(e.getCause());
+      }
+      for(int i=tasks.size()-1;i>=0;i--){
+        tasks.get(i).join();
+      }
+    }
+  }
+}
@@ -0,0 +1,193 @@
+package com.github.nodamushi.common.paths;
+
+import java.nio.file.FileSystem;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * include/exclude patterns of the walkers.<br>
+ * The patterns are matched against the path relative to the start directory.
+ * A pattern is "glob:..." or "regex:..." ({@link FileSystem#getPathMatcher(String)}).
+ * A pattern without the prefix is a glob.
+ * @author nodamushi
+ * @since 1.1.0
+ */
+final class PathFilter{
+  private final List<Include> includes;
+  private final List<PathMatcher> excludes;
+  private final List<PathMatcher> excludeDirectories;
+
+  private PathFilter(List<Include> includes,List<PathMatcher> excludes,List<PathMatcher> excludeDirectories){
+    this.includes = includes;
+    this.excludes = excludes;
+    this.excludeDirectories = excludeDirectories;
+  }
+
+  /**
+   * compile patterns.
+   * @param fs file system
+   * @param includes nullable.If <code>includes</code> is <code>null</code> or empty,all paths are included.
+   * @param excludes nullable.
+   * @return filter
+   */
+  static PathFilter compile(FileSystem fs,Collection<String> includes,Collection<String> excludes){
+    List<Include> in = new ArrayList<>();
+    if(includes != null){
+      for(String p:includes){
+        in.add(new Include(fs,p));
+      }
+    }
+    List<PathMatcher> ex = new ArrayList<>();
+    List<PathMatcher> exd = new ArrayList<>();
+    if(excludes != null){
+      for(String p:excludes){
+        String s = syntax(p);
+        ex.add(fs.getPathMatcher(s));
+        if(s.startsWith("glob:") && s.endsWith("/**") && s.length() > 8){
+          // "dir/**" excludes "dir" itself.
+          exd.add(fs.getPathMatcher(s.substring(0,s.length()-3)));
+        }
+      }
+    }
+    return new PathFilter(in,ex,exd);
+  }
+
+  private static String syntax(String pattern){
+    return pattern.startsWith("glob:") || pattern.startsWith("regex:")? pattern: "glob:"+pattern;
+  }
+
+  /**
+   * @param relative path relative to the start directory
+   * @return true if <code>relative</code> is included and is not excluded.
+   */
+  boolean accept(Path relative){
+    if(excluded(relative)){
+      return false;
+    }
+    if(includes.isEmpty()){
+      return true;
+    }
+    for(Include i:includes){
+      if(i.matcher.matches(relative)){
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @param relative directory path relative to the start directory
+   * @return true if no entry under <code>relative</code> can be accepted.
+   */
+  boolean skipDirectory(Path relative){
+    if(excluded(relative)){
+      return true;
+    }
+    for(PathMatcher m:excludeDirectories){
+      if(m.matches(relative)){
+        return true;
+      }
+    }
+    if(includes.isEmpty()){
+      return false;
+    }
+    for(Include i:includes){
+      if(i.mayContain(relative)){
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private boolean excluded(Path relative){
+    for(PathMatcher m:excludes){
+      if(m.matches(relative)){
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static final class Include{
+    private final PathMatcher matcher;
+    /** matchers of the segments.<code>null</code> if the pattern cannot be analyzed. */
+    private final PathMatcher[] segments;
+    /** index of the first segment which contains "**".-1 if not exists. */
+    private final int any;
+
+    private Include(FileSystem fs,String pattern){
+      String s = syntax(pattern);
+      matcher = fs.getPathMatcher(s);
+      List<String> list = s.startsWith("glob:")?split(s.substring(5)):null;
+      if(list == null){
+        segments = null;
+        any = -1;
+        return;
+      }
+      segments = new PathMatcher[list.size()];
+      int a = -1;
+      for(int i=0;i<segments.length;i++){
+        String seg = list.get(i);
+        if(seg.contains("**")){
+          a = i;
+          break;
+        }
+        segments[i] = fs.getPathMatcher("glob:"+seg);
+      }
+      any = a;
+    }
+
+    /**
+     * split the glob pattern at '/' outside of [] and {}.
+     * @return segments.<code>null</code> if the pattern cannot be analyzed.
+     */
+    private static List<String> split(String glob){
+      List<String> list = new ArrayList<>();
+      int depth = 0,start = 0;
+      for(int i=0;i<glob.length();i++){
+        char c = glob.charAt(i);
+        if(c=='\\'){
+          i++;
+        }else if(c=='[' || c=='{'){
+          depth++;
+        }else if(c==']' || c=='}'){
+          depth--;
+        }else if(c=='/'){
+          if(depth != 0){
+            return null;
+          }
+          list.add(glob.substring(start,i));
+          start = i+1;
+        }
+      }
+      list.add(glob.substring(start));
+      return list;
+    }
+
+    /**
+     * @param dir directory relative to the start directory
+     * @return false if no entry under <code>dir</code> can match this pattern.
+     */
+    private boolean mayContain(Path dir){
+      if(segments == null){
+        return true;
+      }
+      int k = dir.getNameCount();
+      for(int i=0;i<k;i++){
+        if(i == any){
+          return true;
+        }
+        if(i >= segments.length-1){
+          return false;
+        }
+        if(!segments[i].matches(dir.getName(i))){
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+}
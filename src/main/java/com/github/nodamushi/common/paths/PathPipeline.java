@@ -0,0 +1,321 @@
+package com.github.nodamushi.common.paths;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.Charset;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * walk → filter → read → transform pipeline with bounded queues.<br>
+ * The stages are connected by queues of <code>bufferSize</code> elements.
+ * A stage waits while its output queue is full,so the walker slows down to the speed of the slowest stage,
+ * and the heap usage is bounded by the buffer sizes.
+ * Each {@link #map(int, Step)} stage runs on its own <code>parallelism</code> threads,
+ * and a filter runs on the threads of the stage before it.
+ * <pre>
+ * PathPipeline.walkFiles(dir,-1,64)
+ *   .filter(p-&gt;NPaths.getExtension(p).equals("csv"))
+ *   .map(4,PathPipeline.reader(UTF_8,(path,reader)-&gt;parse(reader)))
+ *   .map(2,record-&gt;transform(record))
+ *   .forEach(result-&gt;store(result));
+ * </pre>
+ * The pipeline is immutable,and {@link #forEach(Consumer)} runs it.
+ * The order of the elements is not kept when a stage has 2 or more threads.
+ * @param <T> type of the elements of the last stage
+ * @author nodamushi
+ * @since 1.1.0
+ */
+public final class PathPipeline<T>{
+
+  /**
+   * a function of a stage.
+   * @param <T> input type
+   * @param <R> output type
+   * @since 1.1.0
+   */
+  @FunctionalInterface public static interface Step<T,R>{
+    /**
+     * @param t input
+     * @return output.<code>null</code> drops the element.
+     * @throws IOException exception
+     */
+    public R apply(T t)throws IOException;
+  }
+
+  /**
+   * read a file.
+   * @param <R> output type
+   * @see PathPipeline#reader(Charset, Read)
+   * @since 1.1.0
+   */
+  @FunctionalInterface public static interface Read<R>{
+    /**
+     * @param path file
+     * @param reader reader of <code>path</code>.It is closed after this method returns.
+     * @return output.<code>null</code> drops the element.
+     * @throws IOException exception
+     */
+    public R read(Path path,BufferedReader reader)throws IOException;
+  }
+
+  private static final Object END = new Object();
+  /** put in the last queue by a failed stage to wake up the caller. */
+  private static final Object FAILED = new Object();
+
+  private final PathPipeline<?> upstream;
+  private final Step<Object,Object> step;
+  private final int parallelism;
+  private final Path start;
+  private final int depth;
+  private final int bufferSize;
+
+  private PathPipeline(PathPipeline<?> upstream,Step<Object,Object> step,int parallelism,
+      Path start,int depth,int bufferSize){
+    this.upstream = upstream;
+    this.step = step;
+    this.parallelism = parallelism;
+    this.start = start;
+    this.depth = depth;
+    this.bufferSize = bufferSize;
+  }
+
+  /**
+   * create a pipeline which walks the files by {@link NPaths#walkFiles(Path, int, NPaths.Visit)}.
+   * @param start start path.non null.
+   * @param directoryMaxDepth Max depth of the directory access.If <code>directoryMaxDepth</code> is less than 0, it is considered to be unlimited.
+   * @param bufferSize capacity of the queue between the stages.
+   * @return pipeline
+   * @throws NullPointerException <code>start</code> is <code>null</code>
+   * @throws IllegalArgumentException <code>bufferSize</code> &lt;= 0
+   */
+  public static PathPipeline<Path> walkFiles(Path start,int directoryMaxDepth,int bufferSize)
+      throws NullPointerException,IllegalArgumentException{
+    requireNonNull(start,"start is null");
+    if(bufferSize <= 0){
+      throw new IllegalArgumentException("bufferSize <= 0 :"+bufferSize);
+    }
+    return new PathPipeline<>(null,t->t,1,start,directoryMaxDepth,bufferSize);
+  }
+
+  /**
+   * create a step which opens a file by {@link NPaths#newBufferedReader(Path, Charset, java.nio.file.OpenOption...)} and reads it.
+   * @param <R> output type
+   * @param charset charset.If <code>charset</code> is <code>null</code>,{@link Charset#defaultCharset()} will be used.
+   * @param read read function.non null.
+   * @return step
+   * @throws NullPointerException <code>read</code> is <code>null</code>
+   */
+  public static <R> Step<Path,R> reader(Charset charset,Read<? extends R> read)throws NullPointerException{
+    requireNonNull(read,"read is null");
+    return path->{
+      try(BufferedReader r = NPaths.newBufferedReader(path,charset)){
+        return read.read(path,r);
+      }
+    };
+  }
+
+  /**
+   * drop the elements which do not match <code>predicate</code>.
+   * The predicate runs on the threads of the last stage.
+   * @param predicate predicate.non null.
+   * @return pipeline
+   * @throws NullPointerException <code>predicate</code> is <code>null</code>
+   */
+  public PathPipeline<T> filter(Predicate<? super T> predicate)throws NullPointerException{
+    requireNonNull(predicate,"predicate is null");
+    Step<Object,Object> s = step;
+    return new PathPipeline<>(upstream,t->{
+      Object r = s.apply(t);
+      @SuppressWarnings("unchecked") T v = (T)r;
+      return r != null && predicate.test(v)?r:null;
+    },parallelism,start,depth,bufferSize);
+  }
+
+  /**
+   * add a stage.
+   * @param <R> output type
+   * @param parallelism the number of the threads of the stage.
+   * @param step function of the stage.non null.
+   * @return pipeline
+   * @throws NullPointerException <code>step</code> is <code>null</code>
+   * @throws IllegalArgumentException <code>parallelism</code> &lt;= 0
+   */
+  @SuppressWarnings("unchecked")
+  public <R> PathPipeline<R> map(int parallelism,Step<? super T,? extends R> step)
+      throws NullPointerException,IllegalArgumentException{
+    requireNonNull(step,"step is null");
+    if(parallelism <= 0){
+      throw new IllegalArgumentException("parallelism <= 0 :"+parallelism);
+    }
+    Step<Object,Object> s = (Step<Object,Object>)(Step<?,?>)step;
+    return new PathPipeline<>(this,s,parallelism,null,0,bufferSize);
+  }
+
+  /**
+   * run the pipeline,and call <code>action</code> on the current thread for each element of the last stage.
+   * When a stage or <code>action</code> throws an exception,the pipeline is cancelled and the exception is rethrown.
+   * @param action action.non null.
+   * @throws IOException I/O exception occur.
+   * @throws NullPointerException <code>action</code> is <code>null</code>
+   */
+  public void forEach(Consumer<? super T> action)throws IOException,NullPointerException{
+    requireNonNull(action,"action is null");
+    List<PathPipeline<?>> stages = new ArrayList<>();
+    for(PathPipeline<?> p = this;p != null;p = p.upstream){
+      stages.add(p);
+    }
+    Collections.reverse(stages);
+    new Run(stages).run(action);
+  }
+
+  private static final class Run{
+    private final List<PathPipeline<?>> stages;
+    private final List<BlockingQueue<Object>> queues = new ArrayList<>();
+    private final AtomicInteger[] running;
+    private final AtomicReference<Throwable> error = new AtomicReference<>();
+    private ExecutorService executor;
+
+    private Run(List<PathPipeline<?>> stages){
+      this.stages = stages;
+      running = new AtomicInteger[stages.size()];
+      for(int i=0;i<stages.size();i++){
+        queues.add(new ArrayBlockingQueue<>(stages.get(0).bufferSize));
+        running[i] = new AtomicInteger(stages.get(i).parallelism);
+      }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> void run(Consumer<? super T> action)throws IOException{
+      int threads = 0;
+      for(PathPipeline<?> s:stages){
+        threads += s.parallelism;
+      }
+      executor = Threads.newExecutor(threads);
+      try{
+        try{
+          executor.execute(this::walk);
+          for(int i=1;i<stages.size();i++){
+            for(int j=0;j<stages.get(i).parallelism;j++){
+              int index = i;
+              executor.execute(()->work(index));
+            }
+          }
+        }catch(RejectedExecutionException e){
+          // a stage has already failed,and fail() has shut down the executor.
+          if(error.get() == null){
+            throw e;
+          }
+        }
+        BlockingQueue<Object> q = queues.get(queues.size()-1);
+        try{
+          Object o;
+          while((o = q.take()) != END && o != FAILED){
+            action.accept((T)o);
+          }
+        }catch(InterruptedException e){
+          Thread.currentThread().interrupt();
+          if(error.get() == null){
+            throw new InterruptedIOException("pipeline interrupted");
+          }
+        }catch(RuntimeException|Error e){
+          error.compareAndSet(null,e);
+        }
+      }finally{
+        executor.shutdownNow();
+      }
+      Throwable e = error.get();
+      if(e != null){
+        if(e instanceof IOException) throw (IOException)e;
+        if(e instanceof RuntimeException) throw (RuntimeException)e;
+        throw (Error)e;
+      }
+    }
+
+    private void walk(){
+      PathPipeline<?> s = stages.get(0);
+      BlockingQueue<Object> out = queues.get(0);
+      try{
+        NPaths.walkFiles(s.start,s.depth,(file,attrs)->{
+          Object r = s.step.apply(file);
+          if(r != null){
+            put(out,r);
+          }
+          return FileVisitResult.CONTINUE;
+        });
+        finish(0);
+      }catch(InterruptedIOException e){
+        // cancelled
+      }catch(IOException|RuntimeException|Error e){
+        fail(e);
+      }
+    }
+
+    private void work(int index){
+      PathPipeline<?> s = stages.get(index);
+      BlockingQueue<Object> in = queues.get(index-1);
+      BlockingQueue<Object> out = queues.get(index);
+      try{
+        Object o;
+        while((o = in.take()) != END){
+          Object r = s.step.apply(o);
+          if(r != null){
+            put(out,r);
+          }
+        }
+        finish(index);
+      }catch(InterruptedException|InterruptedIOException e){
+        // cancelled
+      }catch(IOException|RuntimeException|Error e){
+        fail(e);
+      }
+    }
+
+    private static void put(BlockingQueue<Object> q,Object o)throws InterruptedIOException{
+      try{
+        q.put(o);
+      }catch(InterruptedException e){
+        throw new InterruptedIOException("pipeline cancelled");
+      }
+    }
+
+    /**
+     * the last thread of the stage tells the end to all threads of the next stage.
+     */
+    private void finish(int index)throws InterruptedIOException{
+      if(running[index].decrementAndGet() != 0){
+        return;
+      }
+      int consumers = index+1 < stages.size()?stages.get(index+1).parallelism:1;
+      for(int i=0;i<consumers;i++){
+        put(queues.get(index),END);
+      }
+    }
+
+    private void fail(Throwable e){
+      if(!error.compareAndSet(null,e)){
+        return;
+      }
+      executor.shutdownNow();
+      // the elements are dropped anyway,so make room for the marker.
+      BlockingQueue<Object> q = queues.get(queues.size()-1);
+      while(!q.offer(FAILED)){
+        q.poll();
+      }
+    }
+  }
+}
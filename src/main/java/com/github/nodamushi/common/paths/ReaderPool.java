@@ -0,0 +1,372 @@
+package com.github.nodamushi.common.paths;
+
+import static java.nio.charset.StandardCharsets.*;
+import static java.util.Objects.requireNonNull;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * factory of {@link BufferedReader}s which reuse their buffers.<br>
+ * A reader of {@link NPaths#newBufferedReader(Path, Charset, OpenOption...)} allocates
+ * a byte buffer,a decoder with its buffers,a char buffer and the BOM arrays.
+ * A reader of this pool takes a set of them(8KiB bytes,8KiB chars,a decoder and a line buffer) from the pool,
+ * decodes the bytes by itself,and returns the set when it is closed.
+ * The pool is a fixed array of slots taken and returned by compare-and-set,
+ * so it is shared by the threads without locks,and works with virtual threads,whose thread locals are not reused.
+ * When the pool is empty,a new set is allocated,and when the pool is full,the returned set is dropped.<br>
+ * The readers skip the BOM like {@link NPaths#newBufferedReader(InputStream, Charset)},
+ * and do not support {@link BufferedReader#mark(int)}.
+ * The readers must be closed to return the buffers,and must not be used after they are closed.
+ * <pre>
+ * ReaderPool pool = new ReaderPool(64);
+ * try(BufferedReader r = pool.newBufferedReader(path,UTF_8)){
+ *   ...
+ * }
+ * </pre>
+ * @author nodamushi
+ * @since 1.1.0
+ */
+public final class ReaderPool{
+  private static final int SIZE = 8192;
+
+  private final AtomicReferenceArray<Buffers> slots;
+
+  /**
+   * @param capacity max number of the buffer sets kept by the pool.
+   * @throws IllegalArgumentException <code>capacity</code> &lt;= 0
+   */
+  public ReaderPool(int capacity)throws IllegalArgumentException{
+    if(capacity <= 0){
+      throw new IllegalArgumentException("capacity <= 0 :"+capacity);
+    }
+    slots = new AtomicReferenceArray<>(capacity);
+  }
+
+  /**
+   * pooled version of {@link NPaths#newBufferedReader(Path, Charset, OpenOption...)}.
+   * @param path file path.non null.
+   * @param charset if <code>charset</code> is <code>null</code>,{@link Charset#defaultCharset()} will be used.
+   * @param options options
+   * @return reader
+   * @throws IOException if an I/O error occurs
+   * @throws NullPointerException <code>path</code> is <code>null</code>
+   */
+  public BufferedReader newBufferedReader(Path path,Charset charset,OpenOption... options)
+      throws IOException,NullPointerException{
+    requireNonNull(path,"path is null");
+    return newBufferedReader(Events.read(path,Files.newInputStream(path,options!=null? options:new OpenOption[0])),charset);
+  }
+
+  /**
+   * pooled version of {@link NPaths#newBufferedReader(InputStream, Charset)}.
+   * @param inputStream input.It is closed with the reader.
+   * @param charset if <code>charset</code> is <code>null</code>,{@link Charset#defaultCharset()} will be used.
+   * @return reader
+   * @throws IOException if an I/O error occurs
+   * @throws NullPointerException <code>inputStream</code> is <code>null</code>
+   */
+  public BufferedReader newBufferedReader(InputStream inputStream,Charset charset)
+      throws IOException,NullPointerException{
+    requireNonNull(inputStream,"inputStream is null");
+    if(charset==null)charset = Charset.defaultCharset();
+    Buffers b = acquire(charset);
+    PooledReader r = new PooledReader(inputStream,b);
+    try{
+      r.skipBom(charset);
+    }catch(IOException|RuntimeException|Error e){
+      r.close();
+      throw e;
+    }
+    return r;
+  }
+
+  /**
+   * @return the number of the buffer sets in the pool.
+   */
+  public int getPooledCount(){
+    int n = 0;
+    for(int i=0;i<slots.length();i++){
+      if(slots.get(i) != null){
+        n++;
+      }
+    }
+    return n;
+  }
+
+  private int start(){
+    return (Thread.currentThread().hashCode() & 0x7FFFFFFF) % slots.length();
+  }
+
+  private Buffers acquire(Charset charset){
+    int s = start();
+    for(int i=0;i<slots.length();i++){
+      int k = (s+i) % slots.length();
+      if(slots.get(k) != null){
+        Buffers b = slots.getAndSet(k,null);
+        if(b != null){
+          b.reset(charset);
+          return b;
+        }
+      }
+    }
+    Buffers b = new Buffers();
+    b.reset(charset);
+    return b;
+  }
+
+  private void release(Buffers b){
+    int s = start();
+    for(int i=0;i<slots.length();i++){
+      if(slots.compareAndSet((s+i) % slots.length(),null,b)){
+        return;
+      }
+    }
+  }
+
+  private static final class Buffers{
+    private final byte[] bytes = new byte[SIZE];
+    private final ByteBuffer in = ByteBuffer.wrap(bytes);
+    private final char[] chars = new char[SIZE];
+    private final CharBuffer out = CharBuffer.wrap(chars);
+    private final StringBuilder line = new StringBuilder(80);
+    private CharsetDecoder decoder;
+
+    private void reset(Charset charset){
+      if(decoder == null || !decoder.charset().equals(charset)){
+        decoder = charset.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+      }else{
+        decoder.reset();
+      }
+      in.clear();
+      in.limit(0);
+      out.clear();
+      out.limit(0);
+      line.setLength(0);
+    }
+  }
+
+  /**
+   * BufferedReader which decodes into the pooled buffers.
+   * The char array of BufferedReader is 1 char and never used.
+   */
+  private final class PooledReader extends BufferedReader{
+    private final InputStream stream;
+    private Buffers b;
+    private boolean eof;
+    private boolean flushed;
+    /** the last char was '\r'. */
+    private boolean skipLF;
+
+    private PooledReader(InputStream stream,Buffers b){
+      super(new StringReader(""),1);
+      this.stream = stream;
+      this.b = b;
+    }
+
+    private void skipBom(Charset charset)throws IOException{
+      byte[] bom =
+          charset.equals(UTF_8)?new byte[]{(byte)0xEF,(byte)0xBB,(byte)0xBF}:
+          charset.equals(UTF_16) || charset.equals(UTF_16BE)?new byte[]{(byte)0xFE,(byte)0xFF}:
+          charset.equals(UTF_16LE)?new byte[]{(byte)0xFF,(byte)0xFE}:
+            null;
+      boolean skip = false;
+      if(bom != null){
+        while(b.in.remaining() < bom.length && readBytes()){}
+        skip = b.in.remaining() >= bom.length;
+        for(int i=0;skip && i<bom.length;i++){
+          skip = b.bytes[i] == bom[i];
+        }
+        if(skip){
+          b.in.position(bom.length);
+        }
+      }
+      Events.bom(stream,charset,skip);
+    }
+
+    /**
+     * @return false if EOF.
+     */
+    private boolean readBytes()throws IOException{
+      ByteBuffer in = b.in;
+      in.compact();
+      int n = stream.read(b.bytes,in.position(),in.remaining());
+      if(n > 0){
+        in.position(in.position()+n);
+      }
+      in.flip();
+      if(n < 0){
+        eof = true;
+      }
+      return n >= 0;
+    }
+
+    private void ensureOpen()throws IOException{
+      if(b == null){
+        throw new IOException("Stream closed");
+      }
+    }
+
+    /**
+     * decode the next chars into the char buffer.
+     * @return false if no more chars.
+     */
+    private boolean fill()throws IOException{
+      CharBuffer out = b.out;
+      out.clear();
+      while(true){
+        if(!eof){
+          CoderResult r = b.decoder.decode(b.in,out,false);
+          if(r.isOverflow() || out.position() > 0){
+            break;
+          }
+          readBytes();
+        }else if(!flushed){
+          CoderResult r = b.decoder.decode(b.in,out,true);
+          if(r.isUnderflow()){
+            r = b.decoder.flush(out);
+            flushed = r.isUnderflow();
+          }
+          if(flushed || out.position() > 0){
+            break;
+          }
+        }else{
+          break;
+        }
+      }
+      out.flip();
+      return out.hasRemaining();
+    }
+
+    /**
+     * @return false if no more chars.
+     */
+    private boolean available()throws IOException{
+      ensureOpen();
+      while(true){
+        if(!b.out.hasRemaining() && !fill()){
+          return false;
+        }
+        if(skipLF){
+          skipLF = false;
+          if(b.out.get(b.out.position()) == '\n'){
+            b.out.get();
+            continue;
+          }
+        }
+        return true;
+      }
+    }
+
+    @Override public int read()throws IOException{
+      return available()?b.out.get():-1;
+    }
+
+    @Override public int read(char[] cbuf,int off,int len)throws IOException{
+      if(off < 0 || len < 0 || len > cbuf.length-off){
+        throw new IndexOutOfBoundsException();
+      }
+      if(len == 0){
+        ensureOpen();
+        return 0;
+      }
+      if(!available()){
+        return -1;
+      }
+      int n = Math.min(len,b.out.remaining());
+      b.out.get(cbuf,off,n);
+      return n;
+    }
+
+    @Override public String readLine()throws IOException{
+      if(!available()){
+        return null;
+      }
+      StringBuilder sb = null;
+      while(true){
+        CharBuffer out = b.out;
+        int start = out.position();
+        int limit = out.limit();
+        for(int i=start;i<limit;i++){
+          char c = b.chars[i];
+          if(c == '\n' || c == '\r'){
+            out.position(i+1);
+            skipLF = c == '\r';
+            if(sb == null){
+              return new String(b.chars,start,i-start);
+            }
+            return sb.append(b.chars,start,i-start).toString();
+          }
+        }
+        if(sb == null){
+          sb = b.line;
+          sb.setLength(0);
+        }
+        sb.append(b.chars,start,limit-start);
+        out.position(limit);
+        if(!fill()){
+          return sb.toString();
+        }
+      }
+    }
+
+    @Override public long skip(long n)throws IOException{
+      if(n < 0){
+        throw new IllegalArgumentException("skip value is negative");
+      }
+      long r = n;
+      while(r > 0 && available()){
+        int k = (int)Math.min(r,b.out.remaining());
+        b.out.position(b.out.position()+k);
+        r -= k;
+      }
+      return n-r;
+    }
+
+    @Override public boolean ready()throws IOException{
+      ensureOpen();
+      return b.out.hasRemaining() || b.in.hasRemaining() || stream.available() > 0;
+    }
+
+    @Override public boolean markSupported(){
+      return false;
+    }
+
+    @Override public void mark(int readAheadLimit)throws IOException{
+      throw new IOException("mark/reset not supported");
+    }
+
+    @Override public void reset()throws IOException{
+      throw new IOException("mark/reset not supported");
+    }
+
+    @Override public void close()throws IOException{
+      Buffers buffers = b;
+      if(buffers == null){
+        return;
+      }
+      b = null;
+      try{
+        stream.close();
+      }finally{
+        if(buffers.line.capacity() <= SIZE){
+          release(buffers);
+        }
+      }
+    }
+  }
+}
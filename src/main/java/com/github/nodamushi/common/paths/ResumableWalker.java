@@ -0,0 +1,284 @@
+package com.github.nodamushi.common.paths;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.requireNonNull;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.github.nodamushi.common.paths.NPaths.Visit;
+
+/**
+ * walker which saves a checkpoint and can resume from it.<br>
+ * The entries of a directory are visited in the order of their names,
+ * so a checkpoint is the names of the directories being walked,and the name of the last completed entry.
+ * <pre>
+ * S  start path
+ * D  name of a directory being walked(one line for each level)
+ * F  name of the last completed entry in the deepest directory(optional)
+ * </pre>
+ * @author nodamushi
+ * @since 1.1.0
+ */
+final class ResumableWalker{
+  private final Visit v;
+  private final boolean d;
+  private final int m;
+  private final Path start;
+  private final Path checkpoint;
+  private final int interval;
+  private final Map<Path,IOException> errors = new LinkedHashMap<>();
+  private final ArrayList<String> stack = new ArrayList<>();
+  private String last;
+  private int count;
+  private List<String> resumeDirs = Collections.emptyList();
+  private String resumeLast;
+  private boolean resuming;
+
+  private ResumableWalker(Path start,Visit visit,boolean directoryMode,int directoryMaxDepth,
+      Path checkpoint,int interval){
+    this.start = requireNonNull(start,"start is null");
+    v = requireNonNull(visit);
+    d = directoryMode;
+    m = directoryMaxDepth;
+    this.checkpoint = requireNonNull(checkpoint,"checkpoint is null");
+    if(interval <= 0){
+      throw new IllegalArgumentException("checkpointInterval <= 0 :"+interval);
+    }
+    this.interval = interval;
+  }
+
+  static Map<Path,IOException> walk(Path start,int directoryMaxDepth,boolean directoryMode,
+      Path checkpoint,int checkpointInterval,Visit visit)throws IOException{
+    ResumableWalker w = new ResumableWalker(start,visit,directoryMode,directoryMaxDepth,checkpoint,checkpointInterval);
+    w.load();
+    BasicFileAttributes attrs = Files.readAttributes(start,BasicFileAttributes.class,LinkOption.NOFOLLOW_LINKS);
+    boolean completed;
+    if(!attrs.isDirectory()){
+      completed = directoryMode || visit.visit(start,attrs)!=FileVisitResult.TERMINATE;
+    }else if(!w.resuming && directoryMode){
+      // no checkpoint until the start is visited,so a failed start is visited again by the next run.
+      FileVisitResult ret = visit.visit(start,attrs);
+      if(ret==FileVisitResult.TERMINATE){
+        w.save();
+      }
+      completed = ret!=FileVisitResult.CONTINUE?ret!=FileVisitResult.TERMINATE:w.walk(start,0);
+    }else{
+      completed = w.walk(start,0);
+    }
+    if(completed){
+      Files.deleteIfExists(checkpoint);
+    }
+    return w.errors;
+  }
+
+  private boolean descend(int depth){
+    return m < 0 || depth <= m;
+  }
+
+  private FileVisitResult visit(Path p,BasicFileAttributes attrs)throws IOException{
+    try{
+      return v.visit(p,attrs);
+    }catch(IOException|RuntimeException|Error e){
+      try{
+        save();
+      }catch(IOException ex){
+        e.addSuppressed(ex);
+      }
+      throw e;
+    }
+  }
+
+  private void completed(String name)throws IOException{
+    last = name;
+    if(++count % interval == 0){
+      save();
+    }
+  }
+
+  /**
+   * @return false if terminated.
+   */
+  private boolean walk(Path dir,int depth)throws IOException{
+    int level = stack.size();
+    String inProgress = null,skipTo = null;
+    if(resuming){
+      if(level < resumeDirs.size()){
+        inProgress = resumeDirs.get(level);
+      }else{
+        skipTo = resumeLast;
+        resuming = false;
+      }
+    }
+    List<String> names = new ArrayList<>();
+    try(DirectoryStream<Path> stream = Files.newDirectoryStream(dir)){
+      for(Path p:stream){
+        names.add(p.getFileName().toString());
+      }
+    }catch(IOException e){
+      errors.put(dir,e);
+      resuming = false;
+      return true;
+    }catch(DirectoryIteratorException e){
+      errors.put(dir,e.getCause());
+      resuming = false;
+      return true;
+    }
+    Collections.sort(names);
+    last = skipTo;
+    for(String name:names){
+      if(skipTo != null && name.compareTo(skipTo) <= 0){
+        continue;
+      }
+      Path p = dir.resolve(name);
+      boolean resumeHere = false;
+      if(inProgress != null){
+        int c = name.compareTo(inProgress);
+        if(c < 0){
+          continue;
+        }
+        resumeHere = c == 0;
+        if(!resumeHere){
+          resuming = false;
+        }
+        inProgress = null;
+      }
+      BasicFileAttributes attrs;
+      try{
+        attrs = Files.readAttributes(p,BasicFileAttributes.class,LinkOption.NOFOLLOW_LINKS);
+      }catch(IOException e){
+        errors.put(p,e);
+        resuming = false;
+        completed(name);
+        continue;
+      }
+      FileVisitResult ret = FileVisitResult.CONTINUE;
+      if(attrs.isDirectory()){
+        if(resumeHere || !d){
+          ret = FileVisitResult.CONTINUE;
+        }else{
+          ret = visit(p,attrs);
+        }
+        if(ret==FileVisitResult.CONTINUE && descend(depth+1)){
+          stack.add(name);
+          boolean cont = walk(p,depth+1);
+          stack.remove(stack.size()-1);
+          if(!cont){
+            return false;
+          }
+        }
+        resuming = false;
+      }else{
+        resuming = false;
+        if(!d){
+          ret = visit(p,attrs);
+        }
+      }
+      if(ret==FileVisitResult.TERMINATE){
+        // the entry has been visited.
+        if(attrs.isDirectory() && descend(depth+1)){
+          stack.add(name);
+          last = null;
+          save();
+          stack.remove(stack.size()-1);
+        }else{
+          last = name;
+          save();
+        }
+        return false;
+      }
+      completed(name);
+      if(ret==FileVisitResult.SKIP_SIBLINGS){
+        break;
+      }
+    }
+    return true;
+  }
+
+  private void load()throws IOException{
+    if(!Files.exists(checkpoint)){
+      return;
+    }
+    List<String> dirs = new ArrayList<>();
+    String l = null;
+    boolean same = false;
+    try(BufferedReader r = Files.newBufferedReader(checkpoint,UTF_8)){
+      String line;
+      while((line = r.readLine()) != null){
+        if(line.length() < 2 || line.charAt(1) != '\t'){
+          continue;
+        }
+        String value = unescape(line.substring(2));
+        switch(line.charAt(0)){
+          case 'S':
+            same = value.equals(start.toString());
+            break;
+          case 'D':
+            dirs.add(value);
+            break;
+          case 'F':
+            l = value;
+            break;
+          default:
+        }
+      }
+    }
+    if(!same){
+      throw new IOException("the checkpoint "+checkpoint+" is not a checkpoint of "+start);
+    }
+    resumeDirs = dirs;
+    resumeLast = l;
+    resuming = true;
+  }
+
+  private void save()throws IOException{
+    Path tmp = checkpoint.resolveSibling(checkpoint.getFileName()+".tmp");
+    try(BufferedWriter w = Files.newBufferedWriter(tmp,UTF_8)){
+      w.write("S\t"+escape(start.toString())+"\n");
+      for(String s:stack){
+        w.write("D\t"+escape(s)+"\n");
+      }
+      if(last != null){
+        w.write("F\t"+escape(last)+"\n");
+      }
+    }
+    try{
+      Files.move(tmp,checkpoint,StandardCopyOption.ATOMIC_MOVE,StandardCopyOption.REPLACE_EXISTING);
+    }catch(AtomicMoveNotSupportedException e){
+      Files.move(tmp,checkpoint,StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  static String escape(String s){
+    return s.replace("\\","\\\\").replace("\n","\\n").replace("\r","\\r").replace("\t","\\t");
+  }
+
+  static String unescape(String s){
+    StringBuilder sb = new StringBuilder(s.length());
+    for(int i=0;i<s.length();i++){
+      char c = s.charAt(i);
+      if(c=='\\' && i+1 < s.length()){
+        char n = s.charAt(++i);
+        sb.append(n=='n'?'\n':n=='r'?'\r':n=='t'?'\t':n);
+      }else{
+        sb.append(c);
+      }
+    }
+    return sb.toString();
+  }
+}
@@ -0,0 +1,31 @@
+package com.github.nodamushi.common.paths;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * executors of the concurrent walkers and readers.
+ * Java 8 version.This class is replaced by META-INF/versions/21/.../Threads.class on Java 21 or later.
+ * @author nodamushi
+ * @since 1.1.0
+ */
+final class Threads{
+  /**
+   * create an executor.
+   * @param maxConcurrency the number of the tasks run at the same time.
+   * @return a pool of <code>maxConcurrency</code> daemon threads.
+   */
+  static ExecutorService newExecutor(int maxConcurrency){
+    AtomicInteger count = new AtomicInteger();
+    ThreadFactory f = r->{
+      Thread t = new Thread(r,"npaths-worker-"+count.incrementAndGet());
+      t.setDaemon(true);
+      return t;
+    };
+    return Executors.newFixedThreadPool(maxConcurrency,f);
+  }
+
+  private Threads(){}
+}
@@ -0,0 +1,151 @@
+package com.github.nodamushi.common.paths;
+
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import com.github.nodamushi.common.paths.NPaths.PathEntry;
+
+/**
+ * the N largest,newest and oldest files,selected during one walk.<br>
+ * Each criterion keeps a heap of at most N files whose top is the worst of them,
+ * so a file is compared only with the top,and the memory is O(N) regardless of the size of the tree.
+ * The parallel walk keeps the heaps per thread and merges them at the end.
+ * @author nodamushi
+ * @see NPaths#topFiles(Path, int, int)
+ * @see NPaths#topFiles(Path, int, int, java.util.concurrent.ForkJoinPool)
+ * @since 1.1.0
+ */
+public final class TopFiles{
+  private static final Comparator<PathEntry> SIZE =
+      Comparator.<PathEntry>comparingLong(e->e.getAttributes().size()).thenComparing(PathEntry::getPath,Comparator.reverseOrder());
+  private static final Comparator<PathEntry> TIME =
+      Comparator.<PathEntry>comparingLong(e->e.getAttributes().lastModifiedTime().toMillis()).thenComparing(PathEntry::getPath,Comparator.reverseOrder());
+
+  private final int n;
+  /** top is the smallest of the largest. */
+  private final PriorityQueue<PathEntry> largest;
+  /** top is the oldest of the newest. */
+  private final PriorityQueue<PathEntry> newest;
+  /** top is the newest of the oldest. */
+  private final PriorityQueue<PathEntry> oldest;
+  private long count;
+
+  TopFiles(int n){
+    if(n <= 0){
+      throw new IllegalArgumentException("n <= 0 :"+n);
+    }
+    this.n = n;
+    largest = new PriorityQueue<>(SIZE);
+    newest = new PriorityQueue<>(TIME);
+    oldest = new PriorityQueue<>(TIME.reversed());
+  }
+
+  /**
+   * compare with the tops before creating an entry,so that most files allocate nothing.
+   */
+  void offer(Path file,BasicFileAttributes attrs){
+    count++;
+    PathEntry e = offerLargest(file,attrs,null);
+    e = offerNewest(file,attrs,e);
+    offerOldest(file,attrs,e);
+  }
+
+  private PathEntry offerLargest(Path file,BasicFileAttributes attrs,PathEntry e){
+    PathEntry top = largest.peek();
+    if(largest.size() < n || compare(attrs.size(),file,top.getAttributes().size(),top.getPath()) > 0){
+      e = add(largest,e,file,attrs);
+    }
+    return e;
+  }
+
+  private PathEntry offerNewest(Path file,BasicFileAttributes attrs,PathEntry e){
+    PathEntry top = newest.peek();
+    if(newest.size() < n || compare(attrs.lastModifiedTime().toMillis(),file,millis(top),top.getPath()) > 0){
+      e = add(newest,e,file,attrs);
+    }
+    return e;
+  }
+
+  private PathEntry offerOldest(Path file,BasicFileAttributes attrs,PathEntry e){
+    PathEntry top = oldest.peek();
+    if(oldest.size() < n || compare(attrs.lastModifiedTime().toMillis(),file,millis(top),top.getPath()) < 0){
+      e = add(oldest,e,file,attrs);
+    }
+    return e;
+  }
+
+  private static long millis(PathEntry e){
+    return e.getAttributes().lastModifiedTime().toMillis();
+  }
+
+  /**
+   * the same order as {@link #SIZE} and {@link #TIME}.
+   */
+  private static int compare(long v1,Path p1,long v2,Path p2){
+    int c = Long.compare(v1,v2);
+    return c != 0?c:p2.compareTo(p1);
+  }
+
+  private PathEntry add(PriorityQueue<PathEntry> q,PathEntry e,Path file,BasicFileAttributes attrs){
+    if(e == null){
+      e = new PathEntry(file,attrs);
+    }
+    q.add(e);
+    if(q.size() > n){
+      q.poll();
+    }
+    return e;
+  }
+
+  void merge(TopFiles t){
+    count += t.count;
+    for(PathEntry e:t.largest){
+      offerLargest(e.getPath(),e.getAttributes(),e);
+    }
+    for(PathEntry e:t.newest){
+      offerNewest(e.getPath(),e.getAttributes(),e);
+    }
+    for(PathEntry e:t.oldest){
+      offerOldest(e.getPath(),e.getAttributes(),e);
+    }
+  }
+
+  private static List<PathEntry> sorted(PriorityQueue<PathEntry> q,Comparator<PathEntry> c){
+    List<PathEntry> list = new ArrayList<>(q);
+    list.sort(c.reversed());
+    return Collections.unmodifiableList(list);
+  }
+
+  /**
+   * @return the largest files,the largest first.
+   */
+  public List<PathEntry> getLargest(){
+    return sorted(largest,SIZE);
+  }
+
+  /**
+   * @return the most recently modified files,the newest first.
+   */
+  public List<PathEntry> getNewest(){
+    return sorted(newest,TIME);
+  }
+
+  /**
+   * @return the least recently modified files,the oldest first.
+   */
+  public List<PathEntry> getOldest(){
+    return sorted(oldest,TIME.reversed());
+  }
+
+  /**
+   * @return the number of the files compared.
+   */
+  public long getFileCount(){
+    return count;
+  }
+}
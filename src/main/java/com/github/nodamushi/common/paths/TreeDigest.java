@@ -0,0 +1,216 @@
+package com.github.nodamushi.common.paths;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Merkle digest(SHA-256) of a tree.<br>
+ * The digest of a file is the SHA-256 of its contents.
+ * The digest of a directory is the SHA-256 of its children sorted by name,
+ * each of which is the kind('F' file,'D' directory,'L' symbolic link,'O' other),the name in UTF-8,0,and the digest of the child.
+ * The digest of a symbolic link is the SHA-256 of its target,and the links are not followed.<br>
+ * The files are hashed in parallel on a {@link ForkJoinPool} with memory-mapped reads.
+ * The digests of the files are kept with their sizes and last modified times,
+ * and the next {@link #digest(Path, ForkJoinPool)} reuses them when the size and the time are unchanged,
+ * so an unchanged tree costs only the stats.
+ * <pre>
+ * TreeDigest d = new TreeDigest();
+ * String before = TreeDigest.toHex(d.digest(dir,null));
+ * ...
+ * boolean changed = !before.equals(TreeDigest.toHex(d.digest(dir,null)));
+ * </pre>
+ * This class is thread-safe,but the calls of {@link #digest(Path, ForkJoinPool)} should not overlap.
+ * @author nodamushi
+ * @since 1.1.0
+ */
+public final class TreeDigest{
+  /** a file mtime close to the hashing time may change again within the timestamp granularity. */
+  private static final long RACY_MILLIS = 2000;
+  private static final byte[] EMPTY = new byte[0];
+
+  private volatile Map<Path,Cached> cache = new ConcurrentHashMap<>();
+  private final AtomicInteger hashed = new AtomicInteger();
+
+  /**
+   * compute the digest of <code>root</code>.
+   * @param root file or directory.non null.
+   * @param pool fork join pool.If <code>pool</code> is <code>null</code>,{@link ForkJoinPool#commonPool()} is used.
+   * @return SHA-256 digest(32 bytes)
+   * @throws IOException I/O exception occur.
+   * @throws NullPointerException <code>root</code> is <code>null</code>
+   */
+  public byte[] digest(Path root,ForkJoinPool pool)throws IOException,NullPointerException{
+    requireNonNull(root,"root is null");
+    hashed.set(0);
+    Run run = new Run(System.currentTimeMillis());
+    BasicFileAttributes attrs = Files.readAttributes(root,BasicFileAttributes.class,LinkOption.NOFOLLOW_LINKS);
+    byte[] digest;
+    try{
+      digest = (pool==null?ForkJoinPool.commonPool():pool).invoke(run.task(root,attrs));
+    }catch(UncheckedIOException e){
+      throw e.getCause();
+    }catch(DirectoryIteratorException e){
+      throw e.getCause();
+    }
+    cache = run.next;
+    return digest;
+  }
+
+  /**
+   * @return the number of the files hashed by the last {@link #digest(Path, ForkJoinPool)}.(not reused)
+   */
+  public int getHashedFileCount(){
+    return hashed.get();
+  }
+
+  /**
+   * remove all cached digests.
+   */
+  public void clear(){
+    cache = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * @param digest bytes
+   * @return lower case hex string
+   */
+  public static String toHex(byte[] digest){
+    StringBuilder sb = new StringBuilder(digest.length*2);
+    for(byte b:digest){
+      sb.append(Character.forDigit((b>>4)&0xF,16)).append(Character.forDigit(b&0xF,16));
+    }
+    return sb.toString();
+  }
+
+  private static final class Cached{
+    private final long size;
+    private final long mtime;
+    private final byte[] digest;
+    private Cached(long size,long mtime,byte[] digest){
+      this.size = size;
+      this.mtime = mtime;
+      this.digest = digest;
+    }
+  }
+
+  private final class Run{
+    private final long time;
+    private final Map<Path,Cached> old = cache;
+    private final Map<Path,Cached> next = new ConcurrentHashMap<>();
+
+    private Run(long time){
+      this.time = time;
+    }
+
+    private RecursiveTask<byte[]> task(Path p,BasicFileAttributes attrs){
+      return attrs.isDirectory()?new DirTask(p):new FileTask(p,attrs);
+    }
+
+    private final class FileTask extends RecursiveTask<byte[]>{
+      private static final long serialVersionUID = 1L;
+      private final Path file;
+      private final BasicFileAttributes attrs;
+
+      private FileTask(Path file,BasicFileAttributes attrs){
+        this.file = file;
+        this.attrs = attrs;
+      }
+
+      @Override protected byte[] compute(){
+        try{
+          if(attrs.isSymbolicLink()){
+            MessageDigest md = Hashing.newDigest();
+            md.update(Files.readSymbolicLink(file).toString().getBytes(UTF_8));
+            return md.digest();
+          }
+          if(!attrs.isRegularFile()){
+            return EMPTY;
+          }
+          long size = attrs.size();
+          long mtime = attrs.lastModifiedTime().toMillis();
+          Cached c = old.get(file);
+          if(c != null && c.size == size && c.mtime == mtime){
+            next.put(file,c);
+            return c.digest;
+          }
+          byte[] d = Hashing.hash(file);
+          hashed.incrementAndGet();
+          if(mtime < time - RACY_MILLIS){
+            next.put(file,new Cached(size,mtime,d));
+          }
+          return d;
+        }catch(IOException e){
+          throw new UncheckedIOException(e);
+        }
+      }
+    }
+
+    private final class DirTask extends RecursiveTask<byte[]>{
+      private static final long serialVersionUID = 1L;
+      private final Path dir;
+
+      private DirTask(Path dir){
+        this.dir = dir;
+      }
+
+      @Override protected byte[] compute(){
+        List<Child> children = new ArrayList<>();
+        try(DirectoryStream<Path> stream = Files.newDirectoryStream(dir)){
+          for(Path p:stream){
+            BasicFileAttributes attrs = Files.readAttributes(p,BasicFileAttributes.class,LinkOption.NOFOLLOW_LINKS);
+            Child c = new Child(p.getFileName().toString(),
+                attrs.isDirectory()?'D':attrs.isSymbolicLink()?'L':attrs.isRegularFile()?'F':'O',
+                task(p,attrs));
+            c.task.fork();
+            children.add(c);
+          }
+        }catch(IOException e){
+          throw new UncheckedIOException(e);
+        }
+        for(int i=children.size()-1;i>=0;i--){
+          children.get(i).digest = children.get(i).task.join();
+        }
+        Collections.sort(children,(a,b)->a.name.compareTo(b.name));
+        MessageDigest md = Hashing.newDigest();
+        for(Child c:children){
+          md.update((byte)c.kind);
+          md.update(c.name.getBytes(UTF_8));
+          md.update((byte)0);
+          md.update(c.digest);
+        }
+        return md.digest();
+      }
+    }
+  }
+
+  private static final class Child{
+    private final String name;
+    private final char kind;
+    private final RecursiveTask<byte[]> task;
+    private byte[] digest;
+
+    private Child(String name,char kind,RecursiveTask<byte[]> task){
+      this.name = name;
+      this.kind = kind;
+      this.task = task;
+    }
+  }
+}
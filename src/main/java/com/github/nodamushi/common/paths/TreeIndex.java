@@ -0,0 +1,310 @@
+package com.github.nodamushi.common.paths;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+import static java.util.Objects.requireNonNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * in-memory index of a tree,kept current by a {@link WatchService}.<br>
+ * The index is seeded by one walk,and every directory is registered to the watch service.
+ * A daemon thread applies the events to the index.
+ * When the events of a directory overflow,only the subtree of the directory is scanned again.<br>
+ * The queries read only memory.The index follows the file system asynchronously,
+ * so a change may not be visible to a query immediately after it happens.<br>
+ * Each directory uses one watch(on Linux,an inotify watch limited by <code>fs.inotify.max_user_watches</code>).
+ * <pre>
+ * try(TreeIndex index = new TreeIndex(dir)){
+ *   List&lt;Path&gt; javaFiles = index.getFiles(dir.resolve("src"),"java");
+ * }
+ * </pre>
+ * @author nodamushi
+ * @since 1.1.0
+ */
+public final class TreeIndex implements Closeable{
+  private final Path root;
+  private final WatchService watcher;
+  private final Map<Path,Node> dirs = new ConcurrentHashMap<>();
+  private final Map<WatchKey,Path> keys = new ConcurrentHashMap<>();
+  private final Thread thread;
+  private volatile IOException error;
+
+  /**
+   * walk <code>root</code>,and start watching it.
+   * @param root root directory.non null.
+   * @throws IOException I/O exception occur.
+   * @throws NullPointerException <code>root</code> is <code>null</code>
+   */
+  public TreeIndex(Path root)throws IOException,NullPointerException{
+    this.root = requireNonNull(root,"root is null");
+    watcher = root.getFileSystem().newWatchService();
+    try{
+      add(root);
+    }catch(IOException|RuntimeException e){
+      watcher.close();
+      throw e;
+    }
+    thread = new Thread(this::run,"npaths-tree-index");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * @return root directory
+   */
+  public Path getRoot(){
+    return root;
+  }
+
+  /**
+   * @param path path
+   * @return true if <code>path</code> is an indexed file or directory.
+   */
+  public boolean contains(Path path){
+    if(dirs.containsKey(path)){
+      return true;
+    }
+    Node n = path.getParent()==null?null:dirs.get(path.getParent());
+    return n != null && n.files.containsKey(getName(path));
+  }
+
+  /**
+   * @param file file path
+   * @return the attributes of the indexed file.<code>null</code> if <code>file</code> is not indexed.
+   */
+  public BasicFileAttributes getAttributes(Path file){
+    Node n = file.getParent()==null?null:dirs.get(file.getParent());
+    return n == null?null:n.files.get(getName(file));
+  }
+
+  /**
+   * @return the number of the indexed files.
+   */
+  public int getFileCount(){
+    int size = 0;
+    for(Node n:dirs.values()){
+      size += n.files.size();
+    }
+    return size;
+  }
+
+  /**
+   * get the files under <code>dir</code>.
+   * @param dir directory
+   * @param extension extension of the files({@link NPaths#getExtension(Path)}).If <code>extension</code> is <code>null</code>,all files are returned.
+   * @return files.empty list if <code>dir</code> is not indexed.
+   */
+  public List<Path> getFiles(Path dir,String extension){
+    List<Path> list = new ArrayList<>();
+    collect(dir,extension,list);
+    return list;
+  }
+
+  /**
+   * @return an exception which stopped the index,or <code>null</code>.
+   */
+  public IOException getError(){
+    return error;
+  }
+
+  private void collect(Path dir,String extension,List<Path> list){
+    Node n = dirs.get(dir);
+    if(n == null){
+      return;
+    }
+    for(String name:n.files.keySet()){
+      Path p = dir.resolve(name);
+      if(extension == null || extension.equals(NPaths.getExtension(p))){
+        list.add(p);
+      }
+    }
+    for(Path c:n.children){
+      collect(c,extension,list);
+    }
+  }
+
+  private static String getName(Path p){
+    return NPaths.getFileName(p);
+  }
+
+  private void add(Path dir)throws IOException{
+    // register before listing,so that no event is lost.
+    WatchKey key = dir.register(watcher,ENTRY_CREATE,ENTRY_DELETE,ENTRY_MODIFY);
+    keys.put(key,dir);
+    Node n = new Node(key);
+    dirs.put(dir,n);
+    List<Path> children = new ArrayList<>();
+    try(DirectoryStream<Path> stream = Files.newDirectoryStream(dir)){
+      for(Path p:stream){
+        BasicFileAttributes a;
+        try{
+          a = Files.readAttributes(p,BasicFileAttributes.class,LinkOption.NOFOLLOW_LINKS);
+        }catch(NoSuchFileException e){
+          continue;
+        }
+        if(a.isDirectory()){
+          children.add(p);
+        }else{
+          n.files.put(getName(p),a);
+        }
+      }
+    }catch(DirectoryIteratorException e){
+      throw e.getCause();
+    }
+    for(Path c:children){
+      try{
+        add(c);
+        n.children.add(c);
+      }catch(NoSuchFileException e){
+        remove(c);
+      }
+    }
+  }
+
+  private void remove(Path dir){
+    Node n = dirs.remove(dir);
+    if(n == null){
+      return;
+    }
+    n.key.cancel();
+    keys.remove(n.key);
+    for(Path c:n.children){
+      remove(c);
+    }
+  }
+
+  private void run(){
+    try{
+      while(true){
+        WatchKey key = watcher.take();
+        process(key,key.pollEvents());
+      }
+    }catch(InterruptedException|ClosedWatchServiceException e){
+      // closed
+    }catch(IOException e){
+      error = e;
+    }
+  }
+
+  /**
+   * apply the events of a signalled key,and reset it.
+   * @param key key taken from the watch service
+   * @param events events of <code>key</code>
+   * @throws IOException I/O exception occur.
+   */
+  void process(WatchKey key,List<WatchEvent<?>> events)throws IOException{
+    Path dir = keys.get(key);
+    if(dir == null){
+      return;
+    }
+    for(WatchEvent<?> e:events){
+      handle(dir,e);
+    }
+    // an overflow has cancelled the key,and rescan(dir) has registered dir with a new key.
+    if(keys.containsKey(key) && !key.reset()){
+      Path parent = dir.getParent();
+      remove(dir);
+      Node p = parent==null?null:dirs.get(parent);
+      if(p != null){
+        p.children.remove(dir);
+      }
+    }
+  }
+
+  /**
+   * @param dir directory
+   * @return the key of the indexed directory,or <code>null</code>.
+   */
+  WatchKey getKey(Path dir){
+    Node n = dirs.get(dir);
+    return n == null?null:n.key;
+  }
+
+  private void handle(Path dir,WatchEvent<?> e)throws IOException{
+    Node n = dirs.get(dir);
+    if(n == null){
+      return;
+    }
+    if(e.kind() == OVERFLOW){
+      rescan(dir);
+      return;
+    }
+    Path p = dir.resolve((Path)e.context());
+    String name = getName(p);
+    if(e.kind() == ENTRY_DELETE){
+      n.files.remove(name);
+      if(n.children.remove(p)){
+        remove(p);
+      }
+      return;
+    }
+    BasicFileAttributes a;
+    try{
+      a = Files.readAttributes(p,BasicFileAttributes.class,LinkOption.NOFOLLOW_LINKS);
+    }catch(NoSuchFileException ex){
+      // a delete event follows.
+      return;
+    }
+    if(a.isDirectory()){
+      n.files.remove(name);
+      if(!dirs.containsKey(p)){
+        try{
+          add(p);
+          n.children.add(p);
+        }catch(NoSuchFileException ex){
+          remove(p);
+        }
+      }
+    }else{
+      n.files.put(name,a);
+    }
+  }
+
+  private void rescan(Path dir)throws IOException{
+    Path parent = dir.getParent();
+    Node pn = parent==null?null:dirs.get(parent);
+    remove(dir);
+    try{
+      add(dir);
+    }catch(NoSuchFileException e){
+      remove(dir);
+      if(pn != null){
+        pn.children.remove(dir);
+      }
+    }
+  }
+
+  /**
+   * stop watching.
+   */
+  @Override public void close()throws IOException{
+    watcher.close();
+    thread.interrupt();
+  }
+
+  private static final class Node{
+    private final WatchKey key;
+    private final Map<String,BasicFileAttributes> files = new ConcurrentHashMap<>();
+    private final Set<Path> children = ConcurrentHashMap.newKeySet();
+    private Node(WatchKey key){
+      this.key = key;
+    }
+  }
+}
@@ -0,0 +1,57 @@
+package com.github.nodamushi.common.paths;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+
+/**
+ * release a mapped buffer before it is garbage collected.<br>
+ * Java 9 or later:sun.misc.Unsafe#invokeCleaner.Java 8:DirectBuffer#cleaner().clean().
+ * If neither is accessible,the buffer is released by the garbage collector.<br>
+ * The buffer must not be accessed after {@link #unmap(ByteBuffer)}.
+ * @author nodamushi
+ * @since 1.1.0
+ */
+final class Unmapper{
+  private static final Object UNSAFE;
+  private static final Method INVOKE_CLEANER;
+
+  static{
+    Object unsafe = null;
+    Method invoke = null;
+    try{
+      Class<?> c = Class.forName("sun.misc.Unsafe");
+      invoke = c.getMethod("invokeCleaner",ByteBuffer.class);
+      Field f = c.getDeclaredField("theUnsafe");
+      f.setAccessible(true);
+      unsafe = f.get(null);
+    }catch(ReflectiveOperationException|RuntimeException e){
+      // Java 8
+      invoke = null;
+    }
+    UNSAFE = unsafe;
+    INVOKE_CLEANER = invoke;
+  }
+
+  static void unmap(ByteBuffer buffer){
+    if(buffer == null || !buffer.isDirect()){
+      return;
+    }
+    try{
+      if(INVOKE_CLEANER != null){
+        INVOKE_CLEANER.invoke(UNSAFE,buffer);
+      }else{
+        Method cleaner = buffer.getClass().getMethod("cleaner");
+        cleaner.setAccessible(true);
+        Object c = cleaner.invoke(buffer);
+        if(c != null){
+          c.getClass().getMethod("clean").invoke(c);
+        }
+      }
+    }catch(ReflectiveOperationException|RuntimeException e){
+      // released by GC
+    }
+  }
+
+  private Unmapper(){}
+}
@@ -0,0 +1,139 @@
+package com.github.nodamushi.common.paths;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import com.github.nodamushi.common.paths.NPaths.PathEntry;
+
+/**
+ * lazy depth first walker.
+ * A directory is opened when the consumer pulls the next entry after it,and closed when all entries are read.
+ * @author nodamushi
+ * @since 1.1.0
+ */
+final class WalkIterator implements Iterator<PathEntry>,Closeable{
+  private final Path start;
+  private final boolean d;
+  private final int m;
+  private final ArrayDeque<Frame> stack = new ArrayDeque<>();
+  private PathEntry next;
+  private Path pending;
+  private int pendingDepth;
+  private boolean started,closed;
+
+  WalkIterator(Path start,boolean directoryMode,int directoryMaxDepth){
+    this.start = requireNonNull(start,"start is null");
+    d = directoryMode;
+    m = directoryMaxDepth;
+  }
+
+  @Override public boolean hasNext(){
+    if(next == null && !closed){
+      next = fetch();
+    }
+    return next != null;
+  }
+
+  @Override public PathEntry next(){
+    if(!hasNext()){
+      throw new NoSuchElementException();
+    }
+    PathEntry e = next;
+    next = null;
+    return e;
+  }
+
+  private boolean descend(int depth){
+    return m < 0 || depth <= m;
+  }
+
+  private PathEntry fetch(){
+    try{
+      if(!started){
+        started = true;
+        BasicFileAttributes attrs = Files.readAttributes(start,BasicFileAttributes.class,LinkOption.NOFOLLOW_LINKS);
+        if(!attrs.isDirectory()){
+          return d?null:new PathEntry(start,attrs);
+        }
+        pending = start;
+        pendingDepth = 0;
+        if(d){
+          return new PathEntry(start,attrs);
+        }
+      }
+      while(true){
+        if(pending != null){
+          Path p = pending;
+          pending = null;
+          DirectoryStream<Path> s = Files.newDirectoryStream(p);
+          stack.push(new Frame(s,pendingDepth));
+        }
+        Frame f = stack.peek();
+        if(f == null){
+          return null;
+        }
+        if(!f.itr.hasNext()){
+          stack.pop().stream.close();
+          continue;
+        }
+        Path p = f.itr.next();
+        BasicFileAttributes attrs = Files.readAttributes(p,BasicFileAttributes.class,LinkOption.NOFOLLOW_LINKS);
+        if(attrs.isDirectory()){
+          if(descend(f.depth+1)){
+            pending = p;
+            pendingDepth = f.depth+1;
+          }
+          if(d){
+            return new PathEntry(p,attrs);
+          }
+        }else if(!d){
+          return new PathEntry(p,attrs);
+        }
+      }
+    }catch(IOException e){
+      throw new UncheckedIOException(e);
+    }catch(DirectoryIteratorException e){
+      throw new UncheckedIOException(e.getCause());
+    }
+  }
+
+  @Override public void close(){
+    closed = true;
+    next = null;
+    pending = null;
+    IOException ex = null;
+    while(!stack.isEmpty()){
+      try{
+        stack.pop().stream.close();
+      }catch(IOException e){
+        if(ex == null) ex = e;
+      }
+    }
+    if(ex != null){
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  private static final class Frame{
+    private final DirectoryStream<Path> stream;
+    private final Iterator<Path> itr;
+    private final int depth;
+    private Frame(DirectoryStream<Path> stream,int depth){
+      this.stream = stream;
+      this.itr = stream.iterator();
+      this.depth = depth;
+    }
+  }
+}
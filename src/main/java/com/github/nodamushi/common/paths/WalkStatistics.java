@@ -0,0 +1,229 @@
+package com.github.nodamushi.common.paths;
+
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.github.nodamushi.common.paths.NPaths.WalkListener;
+
+/**
+ * {@link WalkListener} which counts the entries and accumulates the times of the walks.<br>
+ * The listing times are recorded in a histogram of power of 2 nanoseconds buckets.
+ * Recording does not allocate and does not lock,so one instance can be shared by the walks of many threads.
+ * The values are accumulated until {@link #reset()}.
+ * @author nodamushi
+ * @since 1.1.0
+ */
+public final class WalkStatistics implements WalkListener{
+  private static final int BUCKETS = 64;
+
+  private final LongAdder directories = new LongAdder();
+  private final LongAdder entries = new LongAdder();
+  private final LongAdder files = new LongAdder();
+  private final LongAdder visits = new LongAdder();
+  private final LongAdder listNanos = new LongAdder();
+  private final LongAdder statNanos = new LongAdder();
+  private final LongAdder visitNanos = new LongAdder();
+  private final LongAdder walkNanos = new LongAdder();
+  private final LongAccumulator maxFanOut = new LongAccumulator(Math::max,0);
+  private final LongAccumulator maxDepth = new LongAccumulator(Math::max,0);
+  private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+  @Override public void listed(Path dir,int depth,int entries,long nanos){
+    directories.increment();
+    this.entries.add(entries);
+    listNanos.add(nanos);
+    maxFanOut.accumulate(entries);
+    maxDepth.accumulate(depth);
+    histogram.incrementAndGet(bucket(nanos));
+  }
+
+  @Override public void statted(Path path,long nanos){
+    statNanos.add(nanos);
+  }
+
+  @Override public void visited(Path path,boolean directory,long nanos){
+    if(!directory){
+      files.increment();
+    }
+    visits.increment();
+    visitNanos.add(nanos);
+  }
+
+  @Override public void finished(Path start,long nanos){
+    walkNanos.add(nanos);
+  }
+
+  private static int bucket(long nanos){
+    return nanos <= 1?0:63-Long.numberOfLeadingZeros(nanos);
+  }
+
+  /**
+   * @return the number of the listed directories.
+   */
+  public long getDirectoryCount(){
+    return directories.sum();
+  }
+
+  /**
+   * @return the number of the visited files.
+   */
+  public long getFileCount(){
+    return files.sum();
+  }
+
+  /**
+   * @return the number of the calls of {@link NPaths.Visit}.
+   */
+  public long getVisitCount(){
+    return visits.sum();
+  }
+
+  /**
+   * @return the number of the entries of the listed directories.
+   */
+  public long getEntryCount(){
+    return entries.sum();
+  }
+
+  /**
+   * @return the total time to list the directories.
+   */
+  public long getListNanos(){
+    return listNanos.sum();
+  }
+
+  /**
+   * @return the total time to read the attributes.
+   */
+  public long getStatNanos(){
+    return statNanos.sum();
+  }
+
+  /**
+   * @return the total time spent in {@link NPaths.Visit}.
+   */
+  public long getVisitNanos(){
+    return visitNanos.sum();
+  }
+
+  /**
+   * @return the total elapsed time of the walks.
+   */
+  public long getWalkNanos(){
+    return walkNanos.sum();
+  }
+
+  /**
+   * @return the max number of the entries of a directory.
+   */
+  public long getMaxFanOut(){
+    return maxFanOut.get();
+  }
+
+  /**
+   * @return the mean number of the entries of a directory.
+   */
+  public double getMeanFanOut(){
+    long d = getDirectoryCount();
+    return d == 0?0:(double)getEntryCount()/d;
+  }
+
+  /**
+   * @return the depth of the deepest listed directory.(start directory is 0)
+   */
+  public int getMaxDepth(){
+    return (int)maxDepth.get();
+  }
+
+  /**
+   * @return listed directories per second of the walk time.
+   */
+  public double getDirectoriesPerSecond(){
+    return perSecond(getDirectoryCount());
+  }
+
+  /**
+   * @return visited files per second of the walk time.
+   */
+  public double getFilesPerSecond(){
+    return perSecond(getFileCount());
+  }
+
+  private double perSecond(long count){
+    long n = getWalkNanos();
+    return n == 0?0:count*1e9/n;
+  }
+
+  /**
+   * get the histogram of the listing times.
+   * @return histogram.The index <code>i</code> is the number of the listings which took
+   * [2<sup>i</sup>,2<sup>i+1</sup>) nanoseconds.(the index 0 includes 0 nanoseconds)
+   */
+  public long[] getListHistogram(){
+    long[] h = new long[BUCKETS];
+    for(int i=0;i<BUCKETS;i++){
+      h[i] = histogram.get(i);
+    }
+    return h;
+  }
+
+  /**
+   * estimate a percentile of the listing times from the histogram.
+   * @param percentile 0 - 100
+   * @return upper bound of the bucket which contains the percentile.0 if no directory is listed.
+   * @throws IllegalArgumentException <code>percentile</code> is not in [0,100]
+   */
+  public long getListNanosPercentile(double percentile)throws IllegalArgumentException{
+    if(!(percentile >= 0 && percentile <= 100)){
+      throw new IllegalArgumentException("percentile is not in [0,100] :"+percentile);
+    }
+    long[] h = getListHistogram();
+    long total = 0;
+    for(long c:h){
+      total += c;
+    }
+    if(total == 0){
+      return 0;
+    }
+    long rank = (long)Math.ceil(total*percentile/100);
+    long sum = 0;
+    for(int i=0;i<BUCKETS;i++){
+      sum += h[i];
+      if(sum >= rank && sum > 0){
+        return i >= 62?Long.MAX_VALUE:(2L << i)-1;
+      }
+    }
+    return Long.MAX_VALUE;
+  }
+
+  /**
+   * clear all values.
+   * The values recorded during reset may be lost partially.
+   */
+  public void reset(){
+    directories.reset();
+    entries.reset();
+    files.reset();
+    visits.reset();
+    listNanos.reset();
+    statNanos.reset();
+    visitNanos.reset();
+    walkNanos.reset();
+    maxFanOut.reset();
+    maxDepth.reset();
+    for(int i=0;i<BUCKETS;i++){
+      histogram.set(i,0);
+    }
+  }
+
+  @Override public String toString(){
+    return String.format("directories=%d(%.1f/s) files=%d(%.1f/s) list=%dms stat=%dms visit=%dms walk=%dms "
+        + "fanout(mean=%.1f max=%d) depth=%d list-p50=%dus list-p99=%dus",
+        getDirectoryCount(),getDirectoriesPerSecond(),getFileCount(),getFilesPerSecond(),
+        getListNanos()/1000000,getStatNanos()/1000000,getVisitNanos()/1000000,getWalkNanos()/1000000,
+        getMeanFanOut(),getMaxFanOut(),getMaxDepth(),
+        getListNanosPercentile(50)/1000,getListNanosPercentile(99)/1000);
+  }
+}
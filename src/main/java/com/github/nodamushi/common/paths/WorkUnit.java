@@ -0,0 +1,381 @@
+package com.github.nodamushi.common.paths;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.github.nodamushi.common.paths.NPaths.Visit;
+
+/**
+ * a part of a tree,created by {@link NPaths#partition(Path, int, int, int)}.<br>
+ * A work unit is a list of ranges.
+ * A range is the entries of a directory whose names are in [from,to) by {@link String#compareTo(String)},
+ * and the subdirectories in the range are walked entirely.
+ * A range without the bounds is a whole subtree,and a range with the bounds is a slice of a large flat directory.
+ * The units of one partition are disjoint,and {@link #walkFiles(Visit)} of all units visits
+ * the same files as {@link NPaths#walkFiles(Path, int, Visit)} of the start path.<br>
+ * {@link #toString()} is a plain text which {@link #parse(String)} reads,so a unit can be passed to another process.
+ * <pre>
+ * List&lt;WorkUnit&gt; units = NPaths.partition(dir,-1,4,2);
+ * // worker i
+ * WorkUnit.parse(text).walkFiles((file,attrs)-&gt;{...});
+ * </pre>
+ * @author nodamushi
+ * @since 1.1.0
+ */
+public final class WorkUnit{
+  private final int index;
+  private final int count;
+  private final List<Range> ranges;
+
+  private WorkUnit(int index,int count,List<Range> ranges){
+    this.index = index;
+    this.count = count;
+    this.ranges = ranges;
+  }
+
+  /**
+   * @return index of this unit in the partition.
+   */
+  public int getIndex(){
+    return index;
+  }
+
+  /**
+   * @return the number of the units of the partition.
+   */
+  public int getCount(){
+    return count;
+  }
+
+  /**
+   * @return the estimated number of the entries of this unit.
+   */
+  public long getWeight(){
+    long w = 0;
+    for(Range r:ranges){
+      w += r.weight;
+    }
+    return w;
+  }
+
+  /**
+   * @return the number of the ranges.
+   */
+  public int getRangeCount(){
+    return ranges.size();
+  }
+
+  /**
+   * visit the files of this unit with the semantics of {@link NPaths#walkFiles(Path, int, Visit)}.<br>
+   * {@link FileVisitResult#TERMINATE} stops the walk of this unit.
+   * @param visitFile called for each file.
+   * @throws IOException I/O exception occur.
+   * @throws NullPointerException <code>visitFile</code> is null
+   */
+  public void walkFiles(Visit visitFile)throws IOException,NullPointerException{
+    requireNonNull(visitFile,"visitFile is null");
+    boolean[] terminated = {false};
+    Visit v = (file,attrs)->{
+      FileVisitResult r = visitFile.visit(file,attrs);
+      if(r == FileVisitResult.TERMINATE){
+        terminated[0] = true;
+      }
+      return r;
+    };
+    for(Range r:ranges){
+      if(r.from == null && r.to == null){
+        NPaths.walkFiles(r.dir,r.depth,v);
+      }else{
+        walkRange(r,v,terminated);
+      }
+      if(terminated[0]){
+        return;
+      }
+    }
+  }
+
+  private static void walkRange(Range r,Visit v,boolean[] terminated)throws IOException{
+    try(DirectoryStream<Path> stream = Files.newDirectoryStream(r.dir)){
+      for(Path p:stream){
+        if(!r.contains(p.getFileName().toString())){
+          continue;
+        }
+        BasicFileAttributes attrs = Files.readAttributes(p,BasicFileAttributes.class,LinkOption.NOFOLLOW_LINKS);
+        if(!attrs.isDirectory()){
+          FileVisitResult res = v.visit(p,attrs);
+          if(res == FileVisitResult.TERMINATE || res == FileVisitResult.SKIP_SIBLINGS){
+            return;
+          }
+        }else if(r.depth != 0){
+          NPaths.walkFiles(p,r.depth<0?-1:r.depth-1,v);
+          if(terminated[0]){
+            return;
+          }
+        }
+      }
+    }catch(DirectoryIteratorException e){
+      throw e.getCause();
+    }
+  }
+
+  /**
+   * the text read by {@link #parse(String)}.
+   */
+  @Override public String toString(){
+    StringBuilder sb = new StringBuilder();
+    sb.append("U\t").append(index).append('\t').append(count).append('\n');
+    for(Range r:ranges){
+      sb.append("R\t").append(r.depth).append('\t').append(r.weight).append('\t')
+      .append(ResumableWalker.escape(r.dir.toString())).append('\t')
+      .append(r.from==null?"":ResumableWalker.escape(r.from)).append('\t')
+      .append(r.to==null?"":ResumableWalker.escape(r.to)).append('\n');
+    }
+    return sb.toString();
+  }
+
+  /**
+   * read a unit from the text of {@link #toString()} with the default file system.
+   * @param text text
+   * @return unit
+   * @throws IllegalArgumentException <code>text</code> is not a unit.
+   * @throws NullPointerException <code>text</code> is null
+   */
+  public static WorkUnit parse(String text)throws IllegalArgumentException,NullPointerException{
+    return parse(text,FileSystems.getDefault());
+  }
+
+  /**
+   * read a unit from the text of {@link #toString()}.
+   * @param text text
+   * @param fileSystem file system of the paths.non null.
+   * @return unit
+   * @throws IllegalArgumentException <code>text</code> is not a unit.
+   * @throws NullPointerException <code>text,fileSystem</code> is null
+   */
+  public static WorkUnit parse(String text,FileSystem fileSystem)throws IllegalArgumentException,NullPointerException{
+    requireNonNull(text,"text is null");
+    requireNonNull(fileSystem,"fileSystem is null");
+    String[] lines = text.split("\n");
+    String[] head = lines[0].split("\t",-1);
+    if(head.length != 3 || !head[0].equals("U")){
+      throw new IllegalArgumentException("not a work unit:"+lines[0]);
+    }
+    List<Range> ranges = new ArrayList<>();
+    try{
+      for(int i=1;i<lines.length;i++){
+        if(lines[i].isEmpty()){
+          continue;
+        }
+        String[] f = lines[i].split("\t",-1);
+        if(f.length != 6 || !f[0].equals("R")){
+          throw new IllegalArgumentException("not a range:"+lines[i]);
+        }
+        ranges.add(new Range(fileSystem.getPath(ResumableWalker.unescape(f[3])),Integer.parseInt(f[1]),
+            f[4].isEmpty()?null:ResumableWalker.unescape(f[4]),
+            f[5].isEmpty()?null:ResumableWalker.unescape(f[5]),Long.parseLong(f[2]),0));
+      }
+      return new WorkUnit(Integer.parseInt(head[1]),Integer.parseInt(head[2]),Collections.unmodifiableList(ranges));
+    }catch(NumberFormatException e){
+      throw new IllegalArgumentException(e);
+    }
+  }
+
+  // ---------------- partition ----------------
+
+  static List<WorkUnit> partition(Path start,int directoryMaxDepth,int n,int sampleDepth)throws IOException{
+    requireNonNull(start,"start is null");
+    if(n <= 0){
+      throw new IllegalArgumentException("n <= 0 :"+n);
+    }
+    if(sampleDepth <= 0){
+      throw new IllegalArgumentException("sampleDepth <= 0 :"+sampleDepth);
+    }
+    int m = directoryMaxDepth<0?-1:directoryMaxDepth;
+    List<Range> pieces = new ArrayList<>();
+    BasicFileAttributes attrs = Files.readAttributes(start,BasicFileAttributes.class,LinkOption.NOFOLLOW_LINKS);
+    if(!attrs.isDirectory()){
+      pieces.add(new Range(start,m,null,null,1,0));
+    }else{
+      Sampler s = new Sampler(m,sampleDepth);
+      Node root = s.sample(start,0,0);
+      // a directory which was not listed is estimated to be as large as the average listed directory.
+      long unlisted = 1 + s.entries/Math.max(1,s.directories);
+      long total = root.weight(unlisted);
+      long target = Math.max(1,(total+4L*n-1)/(4L*n));
+      split(root,target,unlisted,pieces);
+    }
+    // the largest first into the lightest unit.
+    List<Range> sorted = new ArrayList<>(pieces);
+    sorted.sort((a,b)->a.weight!=b.weight?Long.compare(b.weight,a.weight):Integer.compare(a.order,b.order));
+    List<List<Range>> bins = new ArrayList<>(n);
+    long[] loads = new long[n];
+    for(int i=0;i<n;i++){
+      bins.add(new ArrayList<>());
+    }
+    for(Range r:sorted){
+      int min = 0;
+      for(int i=1;i<n;i++){
+        if(loads[i] < loads[min]){
+          min = i;
+        }
+      }
+      bins.get(min).add(r);
+      loads[min] += r.weight;
+    }
+    List<WorkUnit> units = new ArrayList<>(n);
+    for(int i=0;i<n;i++){
+      List<Range> b = bins.get(i);
+      b.sort((x,y)->Integer.compare(x.order,y.order));
+      units.add(new WorkUnit(i,n,Collections.unmodifiableList(b)));
+    }
+    return units;
+  }
+
+  /**
+   * cut the entries of <code>node</code> into the ranges of about <code>target</code> entries.
+   * A listed subdirectory larger than <code>target</code> is split recursively,
+   * and the ranges around it exclude its name.
+   */
+  private static void split(Node node,long target,long unlisted,List<Range> out){
+    if(node.weight(unlisted) <= target){
+      out.add(new Range(node.dir,node.depth,null,null,node.weight(unlisted),out.size()));
+      return;
+    }
+    String from = null;
+    long w = 0;
+    for(int i=0;i<node.names.length;i++){
+      String name = node.names[i];
+      Node child = node.children[i];
+      long cw = node.weight(i,unlisted);
+      if(child != null && cw > target){
+        out.add(new Range(node.dir,node.depth,from,name,w,out.size()));
+        split(child,target,unlisted,out);
+        // the least name greater than name.(a file name does not contain NUL)
+        from = name+'\0';
+        w = 0;
+      }else{
+        if(w > 0 && w+cw > target){
+          out.add(new Range(node.dir,node.depth,from,name,w,out.size()));
+          from = name;
+          w = 0;
+        }
+        w += cw;
+      }
+    }
+    out.add(new Range(node.dir,node.depth,from,null,w,out.size()));
+  }
+
+  private static final class Sampler{
+    private final int m;
+    private final int sampleDepth;
+    private long entries;
+    private long directories;
+
+    private Sampler(int m,int sampleDepth){
+      this.m = m;
+      this.sampleDepth = sampleDepth;
+    }
+
+    /**
+     * list <code>dir</code> in the order of the names.
+     * @param depth depth of <code>dir</code> from the start
+     * @param level the number of the directories listed above <code>dir</code>
+     */
+    private Node sample(Path dir,int depth,int level)throws IOException{
+      List<Path> list = new ArrayList<>();
+      try(DirectoryStream<Path> stream = Files.newDirectoryStream(dir)){
+        for(Path p:stream){
+          list.add(p);
+        }
+      }catch(DirectoryIteratorException e){
+        throw e.getCause();
+      }
+      list.sort((a,b)->a.getFileName().toString().compareTo(b.getFileName().toString()));
+      Node node = new Node(dir,m<0?-1:m-depth,list.size());
+      directories++;
+      entries += list.size();
+      boolean descend = m < 0 || depth+1 <= m;
+      for(int i=0;i<list.size();i++){
+        Path p = list.get(i);
+        node.names[i] = p.getFileName().toString();
+        if(descend && Files.readAttributes(p,BasicFileAttributes.class,LinkOption.NOFOLLOW_LINKS).isDirectory()){
+          node.directory[i] = true;
+          if(level+1 < sampleDepth){
+            node.children[i] = sample(p,depth+1,level+1);
+          }
+        }
+      }
+      return node;
+    }
+  }
+
+  private static final class Node{
+    private final Path dir;
+    /** remaining directory max depth of the walk of <code>dir</code>. */
+    private final int depth;
+    private final String[] names;
+    private final boolean[] directory;
+    private final Node[] children;
+    private long weight = -1;
+
+    private Node(Path dir,int depth,int size){
+      this.dir = dir;
+      this.depth = depth;
+      names = new String[size];
+      directory = new boolean[size];
+      children = new Node[size];
+    }
+
+    private long weight(int i,long unlisted){
+      return children[i] != null?1+children[i].weight(unlisted):directory[i]?unlisted:1;
+    }
+
+    private long weight(long unlisted){
+      if(weight < 0){
+        long w = 0;
+        for(int i=0;i<names.length;i++){
+          w += weight(i,unlisted);
+        }
+        weight = w;
+      }
+      return weight;
+    }
+  }
+
+  private static final class Range{
+    private final Path dir;
+    /** directory max depth of the walk from <code>dir</code>. */
+    private final int depth;
+    private final String from;
+    private final String to;
+    private final long weight;
+    /** order of the tree. */
+    private final int order;
+
+    private Range(Path dir,int depth,String from,String to,long weight,int order){
+      this.dir = dir;
+      this.depth = depth;
+      this.from = from;
+      this.to = to;
+      this.weight = weight;
+      this.order = order;
+    }
+
+    private boolean contains(String name){
+      return (from == null || from.compareTo(name) <= 0) && (to == null || name.compareTo(to) < 0);
+    }
+  }
+}
@@ -0,0 +1,199 @@
+package com.github.nodamushi.common.paths;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import com.github.nodamushi.common.paths.NPaths.WalkListener;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * JDK Flight Recorder events.
+ * Java 11 version.The events are recorded only when they are enabled in a recording.
+ * <ul>
+ * <li>com.github.nodamushi.paths.Walk : a walk of {@link NPaths#walkFiles(Path, int, NPaths.Visit)} or {@link NPaths#walkDirectories(Path, int, NPaths.Visit)}</li>
+ * <li>com.github.nodamushi.paths.DirectoryListed : a directory listed by the walk</li>
+ * <li>com.github.nodamushi.paths.Read : a reader of {@link NPaths#newBufferedReader(Path, Charset, java.nio.file.OpenOption...)},from open to close</li>
+ * <li>com.github.nodamushi.paths.ExistenceProbe : an existence test of {@link NPaths.ItrOption#EXIST_ONLY}</li>
+ * </ul>
+ * @author nodamushi
+ * @since 1.1.0
+ */
+final class Events{
+
+  @Name("com.github.nodamushi.paths.Walk")
+  @Label("Walk")
+  @Category("NPaths")
+  @Description("walkFiles or walkDirectories")
+  static final class WalkEvent extends Event{
+    @Label("Start") String start;
+    @Label("Directory Mode") boolean directoryMode;
+    @Label("Directories") long directories;
+    @Label("Entries") long entries;
+    @Label("Visits") long visits;
+  }
+
+  @Name("com.github.nodamushi.paths.DirectoryListed")
+  @Label("Directory Listed")
+  @Category("NPaths")
+  @Description("a directory listed by walkFiles or walkDirectories")
+  static final class DirectoryEvent extends Event{
+    @Label("Directory") String path;
+    @Label("Depth") int depth;
+    @Label("Entries") int entries;
+    @Label("Listing Time")
+    @Description("time to open and read the directory,excluding the stats,the visits and the subdirectories")
+    @Timespan(Timespan.NANOSECONDS) long listTime;
+  }
+
+  @Name("com.github.nodamushi.paths.Read")
+  @Label("Read")
+  @Category("NPaths")
+  @Description("newBufferedReader,from open to close")
+  static final class ReadEvent extends Event{
+    @Label("Path") String path;
+    @Label("Charset") String charset;
+    @Label("BOM Detected") boolean bom;
+    @Label("Bytes Read") @DataAmount long bytesRead;
+  }
+
+  @Name("com.github.nodamushi.paths.ExistenceProbe")
+  @Label("Existence Probe")
+  @Category("NPaths")
+  @Description("existence test of ItrOption.EXIST_ONLY")
+  static final class ProbeEvent extends Event{
+    @Label("Path") String path;
+    @Label("Exists") boolean exists;
+    @Label("Cached") boolean cached;
+  }
+
+  static WalkListener walk(Path start,boolean directoryMode){
+    WalkEvent e = new WalkEvent();
+    if(!e.isEnabled() && !new DirectoryEvent().isEnabled()){
+      return null;
+    }
+    return new Recorder(e,start,directoryMode);
+  }
+
+  static InputStream read(Path path,InputStream in){
+    ReadEvent e = new ReadEvent();
+    return e.isEnabled()?new ReadStream(e,path,in):in;
+  }
+
+  static void bom(InputStream in,Charset charset,boolean bom){
+    if(in instanceof ReadStream){
+      ReadEvent e = ((ReadStream)in).e;
+      e.charset = charset.name();
+      e.bom = bom;
+    }
+  }
+
+  static boolean exists(Path path,ListingCache cache){
+    ProbeEvent e = new ProbeEvent();
+    e.begin();
+    boolean exists = cache==null?Files.exists(path):cache.exists(path);
+    e.end();
+    if(e.shouldCommit()){
+      e.path = path.toString();
+      e.exists = exists;
+      e.cached = cache!=null;
+      e.commit();
+    }
+    return exists;
+  }
+
+  private static final class Recorder implements WalkListener{
+    private final WalkEvent e;
+    private long directories,entries,visits;
+
+    private Recorder(WalkEvent e,Path start,boolean directoryMode){
+      this.e = e;
+      e.start = start.toString();
+      e.directoryMode = directoryMode;
+      e.begin();
+    }
+
+    @Override public void listed(Path dir,int depth,int entries,long nanos){
+      directories++;
+      this.entries += entries;
+      DirectoryEvent d = new DirectoryEvent();
+      if(d.isEnabled()){
+        d.path = dir.toString();
+        d.depth = depth;
+        d.entries = entries;
+        d.listTime = nanos;
+        d.commit();
+      }
+    }
+
+    @Override public void visited(Path path,boolean directory,long nanos){
+      visits++;
+    }
+
+    @Override public void finished(Path start,long nanos){
+      e.end();
+      if(e.shouldCommit()){
+        e.directories = directories;
+        e.entries = entries;
+        e.visits = visits;
+        e.commit();
+      }
+    }
+  }
+
+  private static final class ReadStream extends FilterInputStream{
+    private final ReadEvent e;
+    private long bytes;
+    private boolean closed;
+
+    private ReadStream(ReadEvent e,Path path,InputStream in){
+      super(in);
+      this.e = e;
+      e.path = path.toString();
+      e.begin();
+    }
+
+    @Override public int read()throws IOException{
+      int b = super.read();
+      if(b >= 0){
+        bytes++;
+      }
+      return b;
+    }
+
+    @Override public int read(byte[] b,int off,int len)throws IOException{
+      int n = super.read(b,off,len);
+      if(n > 0){
+        bytes += n;
+      }
+      return n;
+    }
+
+    @Override public void close()throws IOException{
+      try{
+        super.close();
+      }finally{
+        if(!closed){
+          closed = true;
+          e.end();
+          if(e.shouldCommit()){
+            e.bytesRead = bytes;
+            e.commit();
+          }
+        }
+      }
+    }
+  }
+
+  private Events(){}
+}
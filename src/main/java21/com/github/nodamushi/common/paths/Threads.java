@@ -0,0 +1,25 @@
+package com.github.nodamushi.common.paths;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * executors of the concurrent walkers and readers.
+ * Java 21 version.Every task runs on its own virtual thread,
+ * so blocking <code>readdir</code>/<code>stat</code>/<code>read</code> calls do not hold a platform thread.
+ * @author nodamushi
+ * @since 1.1.0
+ */
+final class Threads{
+  /**
+   * create an executor.
+   * @param maxConcurrency ignored.The callers take a permit of a semaphore before they start a task,
+   * so that the number of the threads is limited.
+   * @return thread-per-task executor of virtual threads.
+   */
+  static ExecutorService newExecutor(int maxConcurrency){
+    return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("npaths-worker-",1).factory());
+  }
+
+  private Threads(){}
+}
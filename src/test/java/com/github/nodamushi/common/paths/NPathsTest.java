@@ -12,18 +12,50 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitOption;
 import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
 
 import org.hamcrest.Matchers;
+import org.junit.Assume;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import com.github.nodamushi.common.paths.NPaths.DiskUsage;
 import com.github.nodamushi.common.paths.NPaths.ItrOption;
+import com.github.nodamushi.common.paths.NPaths.PathEntry;
 import com.github.nodamushi.common.paths.NPaths.Visit;
 
 public class NPathsTest{
@@ -393,6 +425,8 @@ public class NPathsTest{
   }
 
   private static Path RESOURCES=get("src/test/resources");
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
   @Test
   public void testNewBufferedReader()throws Exception{
     Charset UTF_8 = Charset.forName("utf-8");
@@ -641,6 +675,1248 @@ public class NPathsTest{
 
   }
 
+  private static List<Path> walkList(Path start,int depth,boolean directory) throws IOException{
+    List<Path> list=new ArrayList<>();
+    Visit f = (file,attrs)->{
+      list.add(file);
+      return FileVisitResult.CONTINUE;
+    };
+    if(directory){
+      walkDirectories(start,depth,f);
+    }else{
+      walkFiles(start,depth,f);
+    }
+    return list;
+  }
+
+  @Test
+  public void testWalkFilesParallel() throws IOException{
+    for(int depth=-1;depth<6;depth++){
+      List<Path> list=Collections.synchronizedList(new ArrayList<>());
+      walkFilesParallel(RESOURCES,depth,3,(file,attrs)->{
+        list.add(file);
+        return FileVisitResult.CONTINUE;
+      });
+      assertThat(list,Matchers.containsInAnyOrder(walkList(RESOURCES,depth,false).toArray()));
+    }
+
+    AtomicInteger count = new AtomicInteger();
+    walkFilesParallel(RESOURCES,-1,(ForkJoinPool)null,(file,attrs)->{
+      count.incrementAndGet();
+      return FileVisitResult.TERMINATE;
+    });
+    assertThat(count.get(),Matchers.lessThan(walkList(RESOURCES,-1,false).size()));
+  }
+
+  @Test
+  public void testWalkDirectoriesParallel() throws IOException{
+    ForkJoinPool pool = new ForkJoinPool(2);
+    for(int depth=-1;depth<6;depth++){
+      List<Path> list=Collections.synchronizedList(new ArrayList<>());
+      walkDirectoriesParallel(RESOURCES,depth,pool,(file,attrs)->{
+        list.add(file);
+        return FileVisitResult.CONTINUE;
+      });
+      assertThat(list,Matchers.containsInAnyOrder(walkList(RESOURCES,depth,true).toArray()));
+    }
+    pool.shutdown();
+
+    List<Path> list=Collections.synchronizedList(new ArrayList<>());
+    walkDirectoriesParallel(RESOURCES,-1,2,(file,attrs)->{
+      list.add(file);
+      return file.endsWith("c")?FileVisitResult.SKIP_SUBTREE:FileVisitResult.CONTINUE;
+    });
+    assertThat(list,Matchers.containsInAnyOrder(
+        RESOURCES,RESOURCES.resolve("a"),RESOURCES.resolve("a/b"),RESOURCES.resolve("a/b/c")));
+  }
+
+  @Test
+  public void testWalkFileStream() throws IOException{
+    for(int depth=-1;depth<6;depth++){
+      try(Stream<Path> s=walkFileStream(RESOURCES,depth)){
+        assertThat(s.collect(toList()),is(walkList(RESOURCES,depth,false)));
+      }
+      try(Stream<PathEntry> s=walkFileEntries(RESOURCES,depth)){
+        assertTrue(s.allMatch(e->e.getAttributes().isRegularFile()));
+      }
+    }
+    try(Stream<Path> s=walkFileStream(RESOURCES,-1)){
+      assertThat(s.filter(p->p.endsWith("t2.txt")).findFirst().isPresent(),is(true));
+    }
+    try(Stream<Path> s=walkFileStream(RESOURCES.resolve("empty.txt"),-1)){
+      assertThat(s.collect(toList()),Matchers.contains(RESOURCES.resolve("empty.txt")));
+    }
+  }
+
+  @Test
+  public void testWalkDirectoryStream() throws IOException{
+    for(int depth=-1;depth<6;depth++){
+      try(Stream<Path> s=walkDirectoryStream(RESOURCES,depth)){
+        assertThat(s.collect(toList()),is(walkList(RESOURCES,depth,true)));
+      }
+    }
+    try(Stream<Path> s=walkDirectoryStream(RESOURCES,-1)){
+      assertThat(s.limit(2).collect(toList()),Matchers.contains(RESOURCES,RESOURCES.resolve("a")));
+    }
+  }
+
+  @Test
+  public void testWalkConcurrent() throws IOException{
+    for(int depth=-1;depth<6;depth++){
+      List<Path> files=Collections.synchronizedList(new ArrayList<>());
+      walkFilesConcurrent(RESOURCES,depth,4,(file,attrs)->{
+        files.add(file);
+        return FileVisitResult.CONTINUE;
+      });
+      assertThat(files,Matchers.containsInAnyOrder(walkList(RESOURCES,depth,false).toArray()));
+      List<Path> dirs=Collections.synchronizedList(new ArrayList<>());
+      walkDirectoriesConcurrent(RESOURCES,depth,1,(file,attrs)->{
+        dirs.add(file);
+        return FileVisitResult.CONTINUE;
+      });
+      assertThat(dirs,Matchers.containsInAnyOrder(walkList(RESOURCES,depth,true).toArray()));
+    }
+
+    // the directories found when no permit is left are listed by the running tasks.
+    Path root = tmp.getRoot().toPath();
+    for(int i=0;i<30;i++){
+      Path d = Files.createDirectories(root.resolve("d"+i+"/e/f"));
+      Files.write(d.resolve("t"),new byte[1]);
+    }
+    AtomicInteger running = new AtomicInteger(),max = new AtomicInteger();
+    List<Path> files=Collections.synchronizedList(new ArrayList<>());
+    walkFilesConcurrent(root,-1,2,(file,attrs)->{
+      max.accumulateAndGet(running.incrementAndGet(),Math::max);
+      files.add(file);
+      running.decrementAndGet();
+      return FileVisitResult.CONTINUE;
+    });
+    assertThat(files,Matchers.containsInAnyOrder(walkList(root,-1,false).toArray()));
+    assertTrue(max.get() <= 2);
+  }
+
+  @Test
+  public void testReadAllBytes() throws IOException{
+    List<Path> files = walkList(RESOURCES,-1,false);
+    Map<Path,byte[]> map = readAllBytes(files,3);
+    assertThat(new ArrayList<>(map.keySet()),is(files));
+    for(Path p:files){
+      assertTrue(Arrays.equals(map.get(p),Files.readAllBytes(p)));
+    }
+  }
+
+  @Test
+  public void testReadAll() throws IOException{
+    List<Path> files = walkList(RESOURCES,-1,false);
+    Semaphore budget = new Semaphore(2);
+    for(boolean direct:new boolean[]{false,true}){
+      Map<Path,byte[]> map = new ConcurrentHashMap<>();
+      NPaths.ReadBytes put = (path,contents)->{
+        byte[] b = new byte[contents.remaining()];
+        contents.get(b);
+        map.put(path,b);
+      };
+      readAll(files,3,budget,StandardCharsets.UTF_8,direct,put);
+      assertThat(map.size(),is(files.size()));
+      for(Path p:files){
+        byte[] expected = Files.readAllBytes(p);
+        if(p.endsWith("withBOM.txt")){
+          expected = Arrays.copyOfRange(expected,3,expected.length);
+        }
+        assertTrue(p.toString(),Arrays.equals(map.get(p),expected));
+      }
+      map.clear();
+      try(Stream<Path> s = walkFileStream(RESOURCES,-1)){
+        readAll(s,2,null,null,direct,put);
+      }
+      assertThat(map.size(),is(files.size()));
+      assertTrue(Arrays.equals(map.get(RESOURCES.resolve("withBOM.txt")),Files.readAllBytes(RESOURCES.resolve("withBOM.txt"))));
+    }
+    assertThat(budget.availablePermits(),is(2));
+    try{
+      readAll(Arrays.asList(RESOURCES.resolve("none.txt")),2,budget,null,true,(path,contents)->{});
+      assertTrue(false);
+    }catch(NoSuchFileException e){
+      // ok
+    }
+    assertThat(budget.availablePermits(),is(2));
+  }
+
+  @Test
+  public void testWalkFilesBatch() throws IOException{
+    for(int depth=-1;depth<6;depth++){
+      for(int size=1;size<5;size++){
+        int max=size;
+        List<Path> list=new ArrayList<>();
+        walkFiles(RESOURCES,depth,size,batch->{
+          assertTrue(batch.size()<=max);
+          assertThat(batch.stream().map(e->e.getPath().getParent()).distinct().count(),is(1L));
+          for(PathEntry e:batch){
+            list.add(e.getPath());
+          }
+          return FileVisitResult.CONTINUE;
+        });
+        assertThat(list,is(walkList(RESOURCES,depth,false)));
+      }
+    }
+
+    List<Path> list=new ArrayList<>();
+    walkFiles(RESOURCES,-1,2,batch->{
+      list.add(batch.get(0).getPath());
+      return FileVisitResult.TERMINATE;
+    });
+    assertThat(list.size(),is(1));
+  }
+
+  @Test
+  public void testWalkEntries() throws IOException{
+    for(int depth=-1;depth<6;depth++){
+      List<Path> files=new ArrayList<>();
+      List<Path> dirs=new ArrayList<>();
+      dirs.add(RESOURCES);
+      walkEntries(RESOURCES,depth,(p,attrs)->{
+        (attrs.isDirectory()?dirs:files).add(p);
+        return FileVisitResult.CONTINUE;
+      });
+      assertThat(files,is(walkList(RESOURCES,depth,false)));
+      assertThat(dirs,is(walkList(RESOURCES,depth,true)));
+    }
+
+    List<Path> names=new ArrayList<>();
+    walkEntries(RESOURCES,0,(p,attrs)->{
+      names.add(p.getFileName());
+      return FileVisitResult.CONTINUE;
+    });
+    assertThat(names,Matchers.hasItems(get("a"),get("empty.txt")));
+    assertThat(names.size(),is(10));
+  }
+
+  @Test
+  public void testWalkFilesPattern() throws IOException{
+    List<Path> list=new ArrayList<>();
+    List<Path> dirs=new ArrayList<>();
+    Visit f = (file,attrs)->{
+      list.add(file);
+      return FileVisitResult.CONTINUE;
+    };
+    Visit d = (dir,attrs)->{
+      dirs.add(dir);
+      return FileVisitResult.CONTINUE;
+    };
+
+    walkFiles(RESOURCES,-1,Arrays.asList("*.txt"),null,f);
+    assertThat(list,is(walkList(RESOURCES,0,false)));
+    list.clear();
+
+    walkFiles(RESOURCES,-1,Arrays.asList("a/b/**/t1.txt"),Arrays.asList("**/x"),f);
+    assertThat(list,Matchers.containsInAnyOrder(
+        RESOURCES.resolve("a/b/c/d/t1.txt"),RESOURCES.resolve("a/b/c/t1.txt")));
+    list.clear();
+
+    walkFiles(RESOURCES,-1,null,Arrays.asList("a/b/**","regex:.*BOM.*"),f);
+    assertThat(list,Matchers.containsInAnyOrder(
+        RESOURCES.resolve("a/t1.txt"),RESOURCES.resolve("a/t2.txt"),
+        RESOURCES.resolve("empty.txt"),RESOURCES.resolve("eucjp.txt"),RESOURCES.resolve("sjis.txt")));
+    list.clear();
+
+    walkFiles(RESOURCES,1,Arrays.asList("**/t2.txt"),null,f);
+    assertThat(list,Matchers.contains(RESOURCES.resolve("a/t2.txt")));
+    list.clear();
+
+    walkDirectories(RESOURCES,-1,Arrays.asList("a/*/c"),null,d);
+    assertThat(dirs,Matchers.contains(RESOURCES,RESOURCES.resolve("a/b/c")));
+    dirs.clear();
+
+    walkDirectories(RESOURCES,-1,null,Arrays.asList("a/b/c/*"),d);
+    assertThat(dirs,Matchers.contains(RESOURCES,RESOURCES.resolve("a"),RESOURCES.resolve("a/b"),RESOURCES.resolve("a/b/c")));
+    dirs.clear();
+
+    walkDirectories(RESOURCES,-1,Arrays.asList("a/b/t1.txt"),null,d);
+    assertThat(dirs,Matchers.contains(RESOURCES));
+    dirs.clear();
+
+    // the result of the visitor is handled as the walk without patterns.
+    List<Path> all=new ArrayList<>();
+    for(int depth=-1;depth<4;depth++){
+      Visit skip = (dir,attrs)->{
+        dirs.add(dir);
+        return FileVisitResult.SKIP_SUBTREE;
+      };
+      walkDirectories(RESOURCES,depth,skip);
+      all.addAll(dirs);
+      dirs.clear();
+      walkDirectories(RESOURCES,depth,null,Arrays.asList("x"),skip);
+      assertThat(dirs,is(all));
+      all.clear();
+      dirs.clear();
+    }
+  }
+
+  @Test
+  public void testIncrementalScanner() throws IOException{
+    Path root = tmp.getRoot().toPath();
+    Files.createDirectories(root.resolve("a/b"));
+    Files.createDirectories(root.resolve("c"));
+    Files.write(root.resolve("a/f1"),new byte[1]);
+    Files.write(root.resolve("a/b/f2"),new byte[2]);
+    Files.write(root.resolve("c/f3"),new byte[3]);
+    FileTime past = FileTime.fromMillis(System.currentTimeMillis()-3600_000);
+    for(String d:new String[]{"","a","a/b","c"}){
+      Files.setLastModifiedTime(root.resolve(d),past);
+    }
+    List<String> changes = new ArrayList<>();
+    IncrementalScanner.Delta delta = (change,path,attrs)->
+      changes.add(change+" "+root.relativize(path).toString().replace('\\','/'));
+
+    IncrementalScanner scanner = new IncrementalScanner(root,-1);
+    scanner.scan(delta);
+    assertThat(changes,Matchers.containsInAnyOrder(
+        "ADDED a","ADDED a/f1","ADDED a/b","ADDED a/b/f2","ADDED c","ADDED c/f3"));
+    assertThat(scanner.getListedDirectoryCount(),is(4));
+    changes.clear();
+
+    scanner.scan(delta);
+    assertThat(changes.size(),is(0));
+    assertThat(scanner.getListedDirectoryCount(),is(0));
+
+    Files.write(root.resolve("a/b/f4"),new byte[4]);
+    Files.delete(root.resolve("c/f3"));
+    scanner.scan(delta);
+    assertThat(changes,Matchers.containsInAnyOrder("ADDED a/b/f4","REMOVED c/f3"));
+    assertThat(scanner.getListedDirectoryCount(),is(2));
+    changes.clear();
+
+    // a/b was modified just now,so it is listed again.
+    Files.write(root.resolve("a/b/f2"),new byte[20]);
+    scanner.scan(delta);
+    assertThat(changes,Matchers.contains("MODIFIED a/b/f2"));
+    changes.clear();
+
+    Files.delete(root.resolve("a/b/f4"));
+    Files.delete(root.resolve("a/b/f2"));
+    Files.delete(root.resolve("a/b"));
+    scanner.scan(delta);
+    assertThat(changes,Matchers.containsInAnyOrder("REMOVED a/b/f2","REMOVED a/b/f4","REMOVED a/b"));
+    assertThat(scanner.getDirectoryCount(),is(3));
+    changes.clear();
+
+    // the changes not reported by a failed delta are reported by the next scan.
+    Files.write(root.resolve("c/g1"),new byte[1]);
+    Files.write(root.resolve("c/g2"),new byte[1]);
+    try{
+      scanner.scan((change,path,attrs)->{
+        throw new IOException("test");
+      });
+      throw new AssertionError();
+    }catch(IOException e){
+      assertThat(e.getMessage(),is("test"));
+    }
+    scanner.scan(delta);
+    assertThat(changes,Matchers.containsInAnyOrder("ADDED c/g1","ADDED c/g2"));
+  }
+
+  private static void await(BooleanSupplier condition) throws InterruptedException{
+    long limit = System.currentTimeMillis()+20_000;
+    while(!condition.getAsBoolean() && System.currentTimeMillis() < limit){
+      Thread.sleep(20);
+    }
+    assertTrue(condition.getAsBoolean());
+  }
+
+  @Test
+  public void testTreeIndex() throws Exception{
+    Path root = tmp.getRoot().toPath();
+    Files.createDirectories(root.resolve("a/b"));
+    Files.write(root.resolve("a/t1.txt"),new byte[1]);
+    Files.write(root.resolve("a/b/t2.csv"),new byte[2]);
+    try(TreeIndex index = new TreeIndex(root)){
+      assertThat(index.getFiles(root,null),Matchers.containsInAnyOrder(
+          root.resolve("a/t1.txt"),root.resolve("a/b/t2.csv")));
+      assertThat(index.getFiles(root,"txt"),Matchers.contains(root.resolve("a/t1.txt")));
+      assertThat(index.getAttributes(root.resolve("a/b/t2.csv")).size(),is(2L));
+
+      Files.createDirectories(root.resolve("a/c/d"));
+      Files.write(root.resolve("a/c/d/t3.txt"),new byte[3]);
+      await(()->index.contains(root.resolve("a/c/d/t3.txt")));
+      assertThat(index.getFiles(root.resolve("a/c"),"txt"),Matchers.contains(root.resolve("a/c/d/t3.txt")));
+
+      Files.write(root.resolve("a/t1.txt"),new byte[10]);
+      await(()->index.getAttributes(root.resolve("a/t1.txt")).size()==10);
+
+      Files.delete(root.resolve("a/b/t2.csv"));
+      Files.delete(root.resolve("a/b"));
+      await(()->!index.contains(root.resolve("a/b")));
+      assertThat(index.getFileCount(),is(2));
+      assertNull(index.getError());
+
+      // an overflow rescans the directory,and the new keys keep watching it.
+      Path a = root.resolve("a");
+      WatchKey key = index.getKey(a);
+      index.process(key,Collections.singletonList(new WatchEvent<Object>(){
+        @Override public Kind<Object> kind(){
+          return StandardWatchEventKinds.OVERFLOW;
+        }
+        @Override public int count(){
+          return 1;
+        }
+        @Override public Object context(){
+          return null;
+        }
+      }));
+      assertFalse(key.isValid());
+      assertTrue(index.getKey(a).isValid());
+      assertTrue(index.contains(root.resolve("a/c/d")));
+      assertThat(index.getFileCount(),is(2));
+      Files.write(root.resolve("a/c/d/t4.txt"),new byte[4]);
+      await(()->index.contains(root.resolve("a/c/d/t4.txt")));
+      assertNull(index.getError());
+    }
+  }
+
+  @Test
+  public void testWalkFilesResumable() throws IOException{
+    Path checkpoint = tmp.getRoot().toPath().resolve("checkpoint");
+    List<Path> all = walkList(RESOURCES,-1,false);
+    List<Path> list = new ArrayList<>();
+    try{
+      walkFilesResumable(RESOURCES,-1,checkpoint,1,(file,attrs)->{
+        if(list.size()==7){
+          throw new IOException("test");
+        }
+        list.add(file);
+        return FileVisitResult.CONTINUE;
+      });
+      throw new AssertionError();
+    }catch(IOException e){
+      assertThat(e.getMessage(),is("test"));
+    }
+    assertTrue(Files.exists(checkpoint));
+
+    AtomicInteger count = new AtomicInteger();
+    walkFilesResumable(RESOURCES,-1,checkpoint,100,(file,attrs)->{
+      list.add(file);
+      return count.incrementAndGet()==3?FileVisitResult.TERMINATE:FileVisitResult.CONTINUE;
+    });
+    assertTrue(Files.exists(checkpoint));
+
+    Map<Path,IOException> errors = walkFilesResumable(RESOURCES,-1,checkpoint,100,(file,attrs)->{
+      list.add(file);
+      return FileVisitResult.CONTINUE;
+    });
+    assertTrue(errors.isEmpty());
+    assertThat(list,Matchers.containsInAnyOrder(all.toArray()));
+    assertFalse(Files.exists(checkpoint));
+
+    List<Path> dirs = new ArrayList<>();
+    walkDirectoriesResumable(RESOURCES,1,checkpoint,1,(dir,attrs)->{
+      dirs.add(dir);
+      return FileVisitResult.CONTINUE;
+    });
+    assertThat(dirs,Matchers.containsInAnyOrder(walkList(RESOURCES,1,true).toArray()));
+
+    // the start directory which failed is visited by the next run.
+    dirs.clear();
+    try{
+      walkDirectoriesResumable(RESOURCES,1,checkpoint,1,(dir,attrs)->{
+        throw new IOException("test");
+      });
+      throw new AssertionError();
+    }catch(IOException e){
+      assertThat(e.getMessage(),is("test"));
+    }
+    walkDirectoriesResumable(RESOURCES,1,checkpoint,1,(dir,attrs)->{
+      dirs.add(dir);
+      return FileVisitResult.CONTINUE;
+    });
+    assertThat(dirs,Matchers.containsInAnyOrder(walkList(RESOURCES,1,true).toArray()));
+  }
+
+  @Test
+  public void testListingCache() throws IOException{
+    ListingCache cache = new ListingCache(1000,0,TimeUnit.SECONDS);
+    List<Path> files = new ArrayList<>();
+    walkFiles(RESOURCES,-1,cache,(file,attrs)->{
+      files.add(file);
+      return FileVisitResult.CONTINUE;
+    });
+    assertThat(files,Matchers.containsInAnyOrder(walkList(RESOURCES,-1,false).toArray()));
+    List<Path> dirs = new ArrayList<>();
+    walkDirectories(RESOURCES,1,cache,(dir,attrs)->{
+      dirs.add(dir);
+      return FileVisitResult.CONTINUE;
+    });
+    assertThat(dirs,Matchers.containsInAnyOrder(walkList(RESOURCES,1,true).toArray()));
+
+    int i=0;
+    String[] ret = {
+        "src",
+        "src/test",
+        "src/test/resources",
+        "src/test/resources/a",
+    };
+    for(Path p:iterator(get("src/test/resources/a/z/k/d.txt"),0,ItrOption.EXIST_ONLY,cache)){
+      assertThat(p,is(get(ret[i++])));
+    }
+    assertThat(i,is(ret.length));
+    // "." and ".." are not in the listings.
+    for(String path:new String[]{"./src/test","src/../src/test","src/test/resources/a/../../resources/x"}){
+      List<Path> expected = new ArrayList<>(),actual = new ArrayList<>();
+      iterator(get(path),0,ItrOption.EXIST_ONLY).forEach(expected::add);
+      iterator(get(path),0,ItrOption.EXIST_ONLY,cache).forEach(actual::add);
+      assertThat(path,actual,is(expected));
+    }
+    assertTrue(cache.exists(get("src/..")));
+    assertFalse(cache.exists(get("src/test/none/..")));
+
+    // a listing is validated by the last modified time of the directory.
+    Path root = tmp.getRoot().toPath();
+    Files.write(root.resolve("f1"),new byte[1]);
+    FileTime past = FileTime.fromMillis(System.currentTimeMillis()-3600_000);
+    Files.setLastModifiedTime(root,past);
+    assertThat(cache.list(root).size(),is(1));
+    Files.write(root.resolve("f2"),new byte[2]);
+    Files.setLastModifiedTime(root,past);
+    assertThat(cache.list(root).size(),is(1));
+    assertFalse(cache.exists(root.resolve("f2")));
+    Files.setLastModifiedTime(root,FileTime.fromMillis(past.toMillis()+1000));
+    assertThat(cache.list(root).size(),is(2));
+    assertTrue(cache.exists(root.resolve("f2")));
+
+    // eviction
+    ListingCache small = new ListingCache(2,1,TimeUnit.HOURS);
+    small.list(root);
+    assertThat(small.size(),is(2));
+    Files.createDirectory(root.resolve("d"));
+    Files.write(root.resolve("d/f3"),new byte[3]);
+    small.list(root.resolve("d"));
+    assertThat(small.size(),is(1));
+    small.clear();
+    assertThat(small.size(),is(0));
+
+    // a symbolic link is followed.
+    if(!isWindows()){
+      Files.createSymbolicLink(root.resolve("link"),root.resolve("f1"));
+      Files.createSymbolicLink(root.resolve("broken"),root.resolve("none"));
+      cache.invalidate(root);
+      assertTrue(cache.exists(root.resolve("link")));
+      assertFalse(cache.exists(root.resolve("broken")));
+    }
+  }
+
+  @Test
+  public void testWalkStatistics() throws IOException{
+    WalkStatistics stats = new WalkStatistics();
+    List<Path> files = new ArrayList<>();
+    walkFiles(RESOURCES,-1,stats,(file,attrs)->{
+      files.add(file);
+      return FileVisitResult.CONTINUE;
+    });
+    List<Path> all = walkList(RESOURCES,-1,false);
+    List<Path> dirs = walkList(RESOURCES,-1,true);
+    assertThat(files,Matchers.containsInAnyOrder(all.toArray()));
+    assertThat(stats.getFileCount(),is((long)all.size()));
+    assertThat(stats.getDirectoryCount(),is((long)dirs.size()));
+    assertThat(stats.getEntryCount(),is((long)(all.size()+dirs.size()-1)));
+    assertTrue(stats.getWalkNanos() >= stats.getListNanos()+stats.getStatNanos()+stats.getVisitNanos());
+    assertTrue(stats.getMaxDepth() > 0);
+    long sum = 0;
+    for(long c:stats.getListHistogram()){
+      sum += c;
+    }
+    assertThat(sum,is((long)dirs.size()));
+    assertTrue(stats.getListNanosPercentile(50) <= stats.getListNanosPercentile(100));
+
+    stats.reset();
+    List<Path> list = new ArrayList<>();
+    walkDirectories(RESOURCES,1,stats,(dir,attrs)->{
+      list.add(dir);
+      return FileVisitResult.CONTINUE;
+    });
+    assertThat(list,Matchers.containsInAnyOrder(walkList(RESOURCES,1,true).toArray()));
+    assertThat(stats.getFileCount(),is(0L));
+    assertThat(stats.getVisitCount(),is((long)list.size()));
+  }
+
+  private interface IOAction{
+    void run() throws IOException;
+  }
+
+  /**
+   * @return true if the Java 11 layer is first in the class path.(execution test-java11 of pom.xml)
+   */
+  private static boolean hasEvents(){
+    try{
+      Class.forName("jdk.jfr.Event");
+      Class.forName("com.github.nodamushi.common.paths.Events$WalkEvent");
+      return true;
+    }catch(ClassNotFoundException|UnsupportedClassVersionError e){
+      // Java 8:the layer is not loadable
+      return false;
+    }
+  }
+
+  /**
+   * record the JFR events of NPaths during <code>action</code>.
+   * jdk.jfr is called by reflection,because the tests are compiled for Java 8.
+   * @return the events.The key "event" is the name without "com.github.nodamushi.paths.",and the others are the fields.
+   */
+  private List<Map<String,Object>> recordEvents(IOAction action) throws Exception{
+    Class<?> recording = Class.forName("jdk.jfr.Recording");
+    Object r = recording.getConstructor().newInstance();
+    for(String e:new String[]{"Walk","DirectoryListed","Read","ExistenceProbe"}){
+      recording.getMethod("enable",String.class).invoke(r,"com.github.nodamushi.paths."+e);
+    }
+    Path file = tmp.newFile().toPath();
+    recording.getMethod("start").invoke(r);
+    try{
+      action.run();
+    }finally{
+      recording.getMethod("stop").invoke(r);
+      recording.getMethod("dump",Path.class).invoke(r,file);
+      recording.getMethod("close").invoke(r);
+    }
+    Class<?> recorded = Class.forName("jdk.jfr.consumer.RecordedEvent");
+    Class<?> type = Class.forName("jdk.jfr.EventType");
+    Class<?> descriptor = Class.forName("jdk.jfr.ValueDescriptor");
+    List<Map<String,Object>> list = new ArrayList<>();
+    for(Object e:(List<?>)Class.forName("jdk.jfr.consumer.RecordingFile").getMethod("readAllEvents",Path.class).invoke(null,file)){
+      Object t = recorded.getMethod("getEventType").invoke(e);
+      String name = (String)type.getMethod("getName").invoke(t);
+      if(!name.startsWith("com.github.nodamushi.paths.")){
+        continue;
+      }
+      Map<String,Object> m = new HashMap<>();
+      m.put("event",name.substring("com.github.nodamushi.paths.".length()));
+      for(Object f:(List<?>)type.getMethod("getFields").invoke(t)){
+        String field = (String)descriptor.getMethod("getName").invoke(f);
+        m.put(field,recorded.getMethod("getValue",String.class).invoke(e,field));
+      }
+      list.add(m);
+    }
+    return list;
+  }
+
+  private static List<Map<String,Object>> events(List<Map<String,Object>> events,String name){
+    return events.stream().filter(e->name.equals(e.get("event"))).collect(toList());
+  }
+
+  /**
+   * visit which returns <code>ret</code> for the paths named <code>name</code>.
+   */
+  private static Visit visitList(List<Path> list,String name,FileVisitResult ret){
+    return (p,attrs)->{
+      list.add(p);
+      return p.getFileName().toString().equals(name)?ret:FileVisitResult.CONTINUE;
+    };
+  }
+
+  @Test
+  public void testEventsWalk() throws Exception{
+    Assume.assumeTrue(hasEvents());
+    for(FileVisitResult ret:FileVisitResult.values()){
+      for(int depth=-1;depth<=3;depth++){
+        int m = depth;
+        List<Path> dirs = new ArrayList<>(),files = new ArrayList<>();
+        walkDirectories(RESOURCES,m,visitList(dirs,"b",ret));
+        walkFiles(RESOURCES,m,visitList(files,"t1.txt",ret));
+
+        List<Path> recordedDirs = new ArrayList<>(),recordedFiles = new ArrayList<>();
+        List<Map<String,Object>> events = recordEvents(()->{
+          walkDirectories(RESOURCES,m,visitList(recordedDirs,"b",ret));
+          walkFiles(RESOURCES,m,visitList(recordedFiles,"t1.txt",ret));
+        });
+        assertThat(recordedDirs,is(dirs));
+        assertThat(recordedFiles,is(files));
+
+        List<Map<String,Object>> walks = events(events,"Walk");
+        assertThat(walks.size(),is(2));
+        assertThat(walks.get(0).get("directoryMode"),is(true));
+        assertThat(walks.get(0).get("visits"),is((long)dirs.size()));
+        assertThat(walks.get(1).get("directoryMode"),is(false));
+        assertThat(walks.get(1).get("visits"),is((long)files.size()));
+        long directories = 0,entries = 0;
+        for(Map<String,Object> w:walks){
+          directories += (Long)w.get("directories");
+          entries += (Long)w.get("entries");
+        }
+        List<Map<String,Object>> listed = events(events,"DirectoryListed");
+        assertThat((long)listed.size(),is(directories));
+        assertThat(listed.stream().mapToLong(e->(Integer)e.get("entries")).sum(),is(entries));
+
+        // the listener does not change the walk either.
+        List<Path> listenedDirs = new ArrayList<>(),listenedFiles = new ArrayList<>();
+        walkDirectories(RESOURCES,m,new WalkStatistics(),visitList(listenedDirs,"b",ret));
+        walkFiles(RESOURCES,m,new WalkStatistics(),visitList(listenedFiles,"t1.txt",ret));
+        assertThat(listenedDirs,is(dirs));
+        assertThat(listenedFiles,is(files));
+      }
+    }
+  }
+
+  @Test
+  public void testEventsRead() throws Exception{
+    Assume.assumeTrue(hasEvents());
+    Path file = tmp.newFile().toPath();
+    Files.write(file,new byte[]{(byte)0xEF,(byte)0xBB,(byte)0xBF,'a','b','c'});
+    List<Map<String,Object>> events = recordEvents(()->{
+      try(BufferedReader r = newBufferedReader(file,StandardCharsets.UTF_8)){
+        assertThat(r.readLine(),is("abc"));
+      }
+      try(BufferedReader r = newBufferedReader(RESOURCES.resolve("noBOM.txt"),StandardCharsets.UTF_8)){
+        while(r.readLine() != null){}
+      }
+    });
+    List<Map<String,Object>> reads = events(events,"Read");
+    assertThat(reads.size(),is(2));
+    assertThat(reads.get(0).get("path"),is(file.toString()));
+    assertThat(reads.get(0).get("charset"),is("UTF-8"));
+    assertThat(reads.get(0).get("bom"),is(true));
+    assertThat(reads.get(0).get("bytesRead"),is(6L));
+    assertThat(reads.get(1).get("bom"),is(false));
+    assertThat(reads.get(1).get("bytesRead"),is(Files.size(RESOURCES.resolve("noBOM.txt"))));
+  }
+
+  @Test
+  public void testEventsProbe() throws Exception{
+    Assume.assumeTrue(hasEvents());
+    ListingCache cache = new ListingCache(1000,0,TimeUnit.SECONDS);
+    List<Path> list = new ArrayList<>(),cached = new ArrayList<>();
+    List<Map<String,Object>> events = recordEvents(()->{
+      for(Path p:iterator(get("src/test/resources/a/z/k/d.txt"),ItrOption.EXIST_ONLY)){
+        list.add(p);
+      }
+      for(Path p:iterator(get("src/test/resources/a/z/k/d.txt"),0,ItrOption.EXIST_ONLY,cache)){
+        cached.add(p);
+      }
+    });
+    assertThat(cached,is(list));
+    List<Map<String,Object>> probes = events(events,"ExistenceProbe");
+    List<Map<String,Object>> uncached = probes.stream().filter(e->e.get("cached").equals(false)).collect(toList());
+    assertThat(uncached.size(),is(list.size()+1));
+    assertThat(probes.size(),is(2*uncached.size()));
+    for(int i=0;i<list.size();i++){
+      assertThat(uncached.get(i).get("path"),is(list.get(i).toString()));
+      assertThat(uncached.get(i).get("exists"),is(true));
+    }
+    assertThat(uncached.get(list.size()).get("path"),is(get("src/test/resources/a/z").toString()));
+    assertThat(uncached.get(list.size()).get("exists"),is(false));
+  }
+
+  @Test
+  public void testWalkBreadthFirst() throws IOException{
+    for(int maxFrontier:new int[]{1,2,100}){
+      List<Path> files = new ArrayList<>();
+      walkFilesBreadthFirst(RESOURCES,-1,maxFrontier,(file,attrs)->{
+        files.add(file);
+        return FileVisitResult.CONTINUE;
+      });
+      assertThat(files,Matchers.containsInAnyOrder(walkList(RESOURCES,-1,false).toArray()));
+      List<Path> dirs = new ArrayList<>();
+      walkDirectoriesBreadthFirst(RESOURCES,1,maxFrontier,(dir,attrs)->{
+        dirs.add(dir);
+        return FileVisitResult.CONTINUE;
+      });
+      assertThat(dirs,Matchers.containsInAnyOrder(walkList(RESOURCES,1,true).toArray()));
+      dirs.clear();
+      walkDirectoriesBreadthFirst(RESOURCES,-1,maxFrontier,(dir,attrs)->{
+        dirs.add(dir);
+        return FileVisitResult.CONTINUE;
+      });
+      for(int i=1;i<dirs.size();i++){
+        assertTrue(dirs.get(i-1).getNameCount() <= dirs.get(i).getNameCount());
+      }
+    }
+
+    Path root = tmp.getRoot().toPath();
+    for(String d:new String[]{"a/a1","a/a2","b/b1","b/b2","c"}){
+      Files.createDirectories(root.resolve(d));
+      Files.write(root.resolve(d).resolve("f"),new byte[1]);
+    }
+    List<String> files = new ArrayList<>();
+    walkFilesBestFirst(root,-1,2,Comparator.reverseOrder(),(file,attrs)->{
+      files.add(root.relativize(file.getParent()).toString().replace('\\','/'));
+      return FileVisitResult.CONTINUE;
+    });
+    assertThat(files,Matchers.containsInAnyOrder("a/a1","a/a2","b/b1","b/b2","c"));
+    assertThat(files.get(0),is("c"));
+    files.clear();
+    walkFilesBestFirst(root,-1,100,Comparator.reverseOrder(),(file,attrs)->{
+      files.add(root.relativize(file.getParent()).toString().replace('\\','/'));
+      return FileVisitResult.CONTINUE;
+    });
+    assertThat(files,Matchers.contains("c","b/b2","b/b1","a/a2","a/a1"));
+
+    // the spilled directories whose names are not valid strings.
+    if(isWindows()){
+      return;
+    }
+    try{
+      Process p = new ProcessBuilder("sh","-c","cd \"$0\" && for d in \"$(printf 'x\\377')\" \"$(printf 'y\\303')\";do mkdir -p \"$d/$d/e\" \"$d/f\" && touch \"$d/$d/e/t\" \"$d/f/t\";done",
+          root.toString()).inheritIO().start();
+      assertThat(p.waitFor(),is(0));
+    }catch(InterruptedException e){
+      throw new InterruptedIOException();
+    }
+    List<Path> all = walkList(root,-1,false);
+    for(int maxFrontier:new int[]{1,2}){
+      List<Path> list = new ArrayList<>();
+      walkFilesBreadthFirst(root,-1,maxFrontier,(file,attrs)->{
+        list.add(file);
+        return FileVisitResult.CONTINUE;
+      });
+      assertThat(list,Matchers.containsInAnyOrder(all.toArray()));
+      list.clear();
+      walkFilesBestFirst(root,-1,maxFrontier,Comparator.reverseOrder(),(file,attrs)->{
+        list.add(file);
+        return FileVisitResult.CONTINUE;
+      });
+      assertThat(list,Matchers.containsInAnyOrder(all.toArray()));
+    }
+  }
+
+  @Test
+  public void testPathPipeline() throws IOException{
+    Path a = RESOURCES.resolve("a");
+    List<Path> all = walkList(a,-1,false);
+    List<String> names = new ArrayList<>();
+    PathPipeline.walkFiles(a,-1,1)
+      .filter(p->p.getFileName().toString().equals("t1.txt"))
+      .map(3,PathPipeline.reader(StandardCharsets.UTF_8,(path,reader)->{
+        while(reader.readLine()!=null);
+        return path;
+      }))
+      .map(2,p->a.relativize(p).toString().replace('\\','/'))
+      .forEach(names::add);
+    assertThat(names.size(),is((int)all.stream().filter(p->p.getFileName().toString().equals("t1.txt")).count()));
+    assertTrue(names.contains("b/c/d/t1.txt"));
+
+    // the walker waits for the slow consumer.
+    AtomicInteger walked = new AtomicInteger();
+    AtomicInteger max = new AtomicInteger();
+    AtomicInteger consumed = new AtomicInteger();
+    PathPipeline.walkFiles(a,-1,1)
+      .filter(p->{
+        max.accumulateAndGet(walked.incrementAndGet()-consumed.get(),Math::max);
+        return true;
+      })
+      .map(1,p->p)
+      .forEach(p->{
+        try{
+          Thread.sleep(5);
+        }catch(InterruptedException e){
+          throw new AssertionError(e);
+        }
+        consumed.incrementAndGet();
+      });
+    assertThat(consumed.get(),is(all.size()));
+    assertTrue(max.get() <= 5);
+
+    try{
+      PathPipeline.walkFiles(a,-1,1).map(2,p->{
+        throw new IOException("test");
+      }).forEach(p->{});
+      throw new AssertionError();
+    }catch(IOException e){
+      assertThat(e.getMessage(),is("test"));
+    }
+    assertFalse(Thread.currentThread().isInterrupted());
+
+    // a failure does not interrupt the action,and the interrupt of the action is kept.
+    for(boolean interrupt:new boolean[]{false,true}){
+      AtomicInteger count = new AtomicInteger();
+      CountDownLatch acting = new CountDownLatch(1);
+      try{
+        PathPipeline.walkFiles(a,-1,1).map(1,p->{
+          if(count.incrementAndGet() == 2){
+            // fail while the action runs.
+            try{
+              acting.await();
+            }catch(InterruptedException e){
+              throw new InterruptedIOException();
+            }
+            throw new IOException("test");
+          }
+          return p;
+        }).forEach(p->{
+          acting.countDown();
+          try{
+            Thread.sleep(100);
+          }catch(InterruptedException e){
+            throw new AssertionError(e);
+          }
+          if(interrupt){
+            Thread.currentThread().interrupt();
+          }
+        });
+        throw new AssertionError();
+      }catch(IOException e){
+        // "test",or InterruptedIOException of the interrupt of the action
+      }
+      assertThat(Thread.interrupted(),is(interrupt));
+    }
+  }
+
+  @Test
+  public void testDiskUsage() throws IOException{
+    Path root = tmp.getRoot().toPath();
+    Files.createDirectories(root.resolve("a/b"));
+    Files.createDirectories(root.resolve("c"));
+    Files.write(root.resolve("f"),new byte[1]);
+    Files.write(root.resolve("a/f"),new byte[10]);
+    Files.write(root.resolve("a/b/f"),new byte[100]);
+    Files.write(root.resolve("a/b/g"),new byte[1000]);
+    Files.setLastModifiedTime(root.resolve("a/b/g"),FileTime.fromMillis(4102444800000L));
+
+    Map<Path,DiskUsage> map = diskUsage(root,-1,2);
+    assertThat(map.size(),is(4));
+    DiskUsage u = map.get(root);
+    assertThat(u.getSize(),is(1111L));
+    assertThat(u.getFileCount(),is(4L));
+    assertThat(u.getDirectoryCount(),is(3L));
+    assertThat(u.getLastModified(),is(4102444800000L));
+    assertThat(map.get(root.resolve("a")).getSize(),is(1110L));
+    assertThat(map.get(root.resolve("a/b")).getFileCount(),is(2L));
+    assertThat(map.get(root.resolve("c")).getSize(),is(0L));
+
+    map = diskUsage(root,1,ForkJoinPool.commonPool());
+    assertThat(map.keySet(),Matchers.containsInAnyOrder(root,root.resolve("a"),root.resolve("c")));
+    assertThat(map.get(root).getSize(),is(1111L));
+    assertThat(map.get(root.resolve("a")).getSize(),is(1110L));
+  }
+
+  @Test
+  public void testFindDuplicates() throws IOException{
+    Path root = tmp.getRoot().toPath();
+    Files.createDirectories(root.resolve("a/b"));
+    byte[] large = new byte[300*1024];
+    Arrays.fill(large,(byte)1);
+    byte[] middle = large.clone();
+    middle[150*1024] = 2; // same first and last blocks
+    Files.write(root.resolve("l1"),large);
+    Files.write(root.resolve("a/l2"),large);
+    Files.write(root.resolve("a/b/l3"),middle);
+    Files.write(root.resolve("s1"),new byte[]{1,2,3});
+    Files.write(root.resolve("a/b/s2"),new byte[]{1,2,3});
+    Files.write(root.resolve("a/s3"),new byte[]{1,2,4});
+    Files.write(root.resolve("u"),new byte[]{1});
+    Files.write(root.resolve("e1"),new byte[0]);
+    Files.write(root.resolve("e2"),new byte[0]);
+
+    List<List<Path>> groups = findDuplicates(root,-1,2);
+    assertThat(groups.size(),is(2));
+    assertThat(groups,Matchers.containsInAnyOrder(
+        Arrays.asList(root.resolve("a/b/s2"),root.resolve("s1")),
+        Arrays.asList(root.resolve("a/l2"),root.resolve("l1"))));
+    assertThat(findDuplicates(root,0,ForkJoinPool.commonPool()).size(),is(0));
+  }
+
+  @Test
+  public void testTreeDigest() throws IOException{
+    Path root = tmp.getRoot().toPath();
+    Files.createDirectories(root.resolve("a/b"));
+    Files.write(root.resolve("f"),new byte[]{1});
+    Files.write(root.resolve("a/f"),new byte[]{2});
+    Files.write(root.resolve("a/b/f"),new byte[]{3});
+    FileTime past = FileTime.fromMillis(System.currentTimeMillis()-3600_000);
+    for(String f:new String[]{"f","a/f","a/b/f"}){
+      Files.setLastModifiedTime(root.resolve(f),past);
+    }
+    TreeDigest d = new TreeDigest();
+    String first = TreeDigest.toHex(d.digest(root,null));
+    assertThat(first.length(),is(64));
+    assertThat(d.getHashedFileCount(),is(3));
+
+    assertThat(TreeDigest.toHex(d.digest(root,ForkJoinPool.commonPool())),is(first));
+    assertThat(d.getHashedFileCount(),is(0));
+
+    Files.write(root.resolve("a/b/f"),new byte[]{4});
+    Files.setLastModifiedTime(root.resolve("a/b/f"),FileTime.fromMillis(past.toMillis()+1000));
+    String changed = TreeDigest.toHex(d.digest(root,null));
+    assertNotEquals(first,changed);
+    assertThat(d.getHashedFileCount(),is(1));
+    assertThat(TreeDigest.toHex(new TreeDigest().digest(root,null)),is(changed));
+
+    Files.move(root.resolve("a/f"),root.resolve("a/g"));
+    assertNotEquals(changed,TreeDigest.toHex(d.digest(root,null)));
+  }
+
+  @Test
+  public void testTopFiles() throws IOException{
+    Path root = tmp.getRoot().toPath();
+    Files.createDirectories(root.resolve("a/b"));
+    long now = System.currentTimeMillis()/1000*1000;
+    String[] names = {"f0","a/f1","a/b/f2","f3","a/f4","a/b/f5","f6"};
+    for(int i=0;i<names.length;i++){
+      Path p = root.resolve(names[i]);
+      Files.write(p,new byte[i*10]);
+      Files.setLastModifiedTime(p,FileTime.fromMillis(now-(i%4)*100_000-i));
+    }
+    for(TopFiles top:new TopFiles[]{topFiles(root,-1,3),topFiles(root,-1,3,ForkJoinPool.commonPool())}){
+      assertThat(top.getFileCount(),is(7L));
+      assertThat(top.getLargest().stream().map(e->root.relativize(e.getPath()).toString().replace('\\','/')).collect(toList()),
+          Matchers.contains("f6","a/b/f5","a/f4"));
+      assertThat(top.getNewest().stream().map(e->root.relativize(e.getPath()).toString().replace('\\','/')).collect(toList()),
+          Matchers.contains("f0","a/f4","a/f1"));
+      assertThat(top.getOldest().stream().map(e->root.relativize(e.getPath()).toString().replace('\\','/')).collect(toList()),
+          Matchers.contains("f3","f6","a/b/f2"));
+    }
+    assertThat(topFiles(root,0,10).getFileCount(),is(3L));
+  }
+
+  @Test
+  public void testPartition() throws IOException{
+    Path root = tmp.getRoot().toPath();
+    for(int i=0;i<40;i++){
+      Files.write(Files.createDirectories(root.resolve("flat")).resolve("f"+i),new byte[0]);
+    }
+    for(String d:new String[]{"a/b/c","a/d","e"}){
+      Files.createDirectories(root.resolve(d));
+      for(int i=0;i<3;i++){
+        Files.write(root.resolve(d).resolve("g"+i),new byte[0]);
+      }
+    }
+    Files.write(root.resolve("top"),new byte[0]);
+    for(int depth:new int[]{-1,0,1,2}){
+      List<WorkUnit> units = partition(root,depth,3,2);
+      assertThat(units.size(),is(3));
+      assertThat(units.toString(),is(partition(root,depth,3,2).toString()));
+      List<Path> list = new ArrayList<>();
+      for(WorkUnit u:units){
+        WorkUnit.parse(u.toString()).walkFiles((file,attrs)->{
+          list.add(file);
+          return FileVisitResult.CONTINUE;
+        });
+      }
+      List<Path> expected = walkList(root,depth,false);
+      assertThat(list.size(),is(expected.size()));
+      assertThat(list,Matchers.containsInAnyOrder(expected.toArray()));
+    }
+    long max = 0;
+    for(WorkUnit u:partition(root,-1,3,2)){
+      max = Math.max(max,u.getWeight());
+    }
+    assertThat(max,Matchers.lessThan(40L));
+  }
+
+  @Test
+  public void testWalkFilesFollowLinks() throws IOException{
+    FileKeySet keys = new FileKeySet();
+    for(int i=0;i<1000;i++){
+      assertTrue(keys.add(i%7,i));
+    }
+    assertFalse(keys.add(3,500));
+    assertTrue(keys.add("(dev=fd01,ino=1000)"));
+    assertFalse(keys.add("(dev=fd01,ino=1000)"));
+    assertTrue(keys.add("key"));
+    assertThat(keys.size(),is(1002));
+    assertThat(keys.get("key"),is(0L));
+    assertThat(keys.get("(dev=fd01,ino=1001)"),is(-1L));
+    assertThat(keys.put("(dev=fd01,ino=1001)",5),is(-1L));
+    assertThat(keys.put("(dev=fd01,ino=1001)",3),is(5L));
+    assertThat(keys.get("(dev=fd01,ino=1001)"),is(3L));
+    if(isWindows()){
+      return;
+    }
+    Path root = tmp.getRoot().toPath();
+    Path a = Files.createDirectories(root.resolve("a"));
+    Files.write(a.resolve("f1"),new byte[1]);
+    Files.createLink(a.resolve("h"),a.resolve("f1"));
+    Files.createSymbolicLink(a.resolve("loop"),root);
+    Files.createSymbolicLink(root.resolve("link"),a);
+    Files.createSymbolicLink(root.resolve("fl"),a.resolve("f1"));
+    Files.createSymbolicLink(root.resolve("broken"),root.resolve("none"));
+    List<String> names = new ArrayList<>();
+    walkFilesFollowLinks(root,-1,false,(file,attrs)->{
+      names.add(file.getFileName().toString());
+      return FileVisitResult.CONTINUE;
+    });
+    assertThat(names,Matchers.containsInAnyOrder("f1","h","fl","broken"));
+    names.clear();
+    walkFilesFollowLinks(root,-1,true,(file,attrs)->{
+      names.add(file.getFileName().toString());
+      return FileVisitResult.CONTINUE;
+    });
+    assertThat(names.size(),is(2));
+    assertTrue(names.contains("broken"));
+    names.clear();
+    walkDirectoriesFollowLinks(root.resolve("link"),-1,(dir,attrs)->{
+      names.add(dir.getFileName().toString());
+      return FileVisitResult.CONTINUE;
+    });
+    assertThat(names,Matchers.contains("link","loop"));
+    names.clear();
+    walkFilesFollowLinks(root,0,false,(file,attrs)->{
+      names.add(file.getFileName().toString());
+      return FileVisitResult.CONTINUE;
+    });
+    assertThat(names,Matchers.containsInAnyOrder("fl","broken"));
+
+    // a directory at the depth limit,or listed deeper,is walked when it is reached at a shallower depth by a link.
+    Path deep = Files.createDirectories(root.resolve("d/b/c/e"));
+    Files.write(deep.resolve("g"),new byte[1]);
+    Files.write(deep.getParent().resolve("f"),new byte[1]);
+    Files.createSymbolicLink(root.resolve("l"),deep.getParent());
+    Files.createSymbolicLink(root.resolve("l2"),root.resolve("d/b"));
+    for(int m=0;m<=5;m++){
+      Set<Object> expected = new HashSet<>();
+      Files.walkFileTree(root,EnumSet.of(FileVisitOption.FOLLOW_LINKS),m+1,new SimpleFileVisitor<Path>(){
+        @Override public FileVisitResult visitFile(Path file,BasicFileAttributes attrs){
+          if(!attrs.isDirectory()){
+            expected.add(attrs.fileKey());
+          }
+          return FileVisitResult.CONTINUE;
+        }
+        @Override public FileVisitResult visitFileFailed(Path file,IOException exc){
+          return FileVisitResult.CONTINUE; // loop
+        }
+      });
+      Set<Object> visited = new HashSet<>();
+      walkFilesFollowLinks(root,m,true,(file,attrs)->{
+        assertTrue(visited.add(attrs.fileKey()));
+        return FileVisitResult.CONTINUE;
+      });
+      assertThat("depth "+m,visited,is(expected));
+    }
+  }
+
+  private static List<String> readerLines(Path path,Charset cs) throws IOException{
+    try(BufferedReader r = newBufferedReader(path,cs)){
+      return r.lines().collect(toList());
+    }
+  }
+
+  @Test
+  public void testLines() throws IOException{
+    String[][] files = {{"empty.txt","UTF-8"},{"noBOM.txt","UTF-8"},{"withBOM.txt","UTF-8"},
+        {"withBOM16BE.txt","UTF-16BE"},{"noBOM16BE.txt","UTF-16BE"},{"withBOM16BE.txt","UTF-16"},
+        {"noBOM16BE.txt","UTF-16"},{"withBOM16LE.txt","UTF-16LE"},{"noBOM16LE.txt","UTF-16LE"},
+        {"sjis.txt","Shift_JIS"},{"eucjp.txt","EUC-JP"}};
+    for(String[] f:files){
+      Path p = RESOURCES.resolve(f[0]);
+      Charset cs = Charset.forName(f[1]);
+      try(Stream<String> s = lines(p,cs)){
+        assertThat(f[0]+" "+f[1],s.collect(toList()),is(readerLines(p,cs)));
+      }
+    }
+    StringBuilder sb = new StringBuilder("\uFEFF");
+    for(int i=0;i<50;i++){
+      sb.append("line").append(i).append(i%3==0?"\r\n":i%3==1?"\r":"\n");
+      if(i%7==0){
+        sb.append("\u3042\u3044\u3046 long line ").append(i).append('\n').append('\n');
+      }
+    }
+    sb.append("last");
+    Path file = tmp.newFile().toPath();
+    for(Charset cs:new Charset[]{StandardCharsets.UTF_8,StandardCharsets.UTF_16LE,StandardCharsets.UTF_16BE}){
+      Files.write(file,sb.toString().getBytes(cs));
+      Charset read = cs.equals(StandardCharsets.UTF_16BE)?StandardCharsets.UTF_16:cs;
+      for(int window:new int[]{2,8,MappedLines.WINDOW}){
+        try(Stream<String> s = MappedLines.lines(file,read,window)){
+          assertThat(s.collect(toList()),is(readerLines(file,read)));
+        }
+        try(Stream<String> s = MappedLines.lines(file,read,window)){
+          assertThat(s.parallel().collect(toList()),is(readerLines(file,read)));
+        }
+      }
+    }
+    // the last byte of UTF-16 is decoded as the replacement character.
+    byte[][] odd = {{(byte)0xFF,(byte)0xFE,0x41},{0x41},{0x41,0,'\n',0,0x42}};
+    for(byte[] bytes:odd){
+      Files.write(file,bytes);
+      for(Charset cs:new Charset[]{StandardCharsets.UTF_16,StandardCharsets.UTF_16LE,StandardCharsets.UTF_16BE}){
+        for(int window:new int[]{2,8,MappedLines.WINDOW}){
+          try(Stream<String> s = MappedLines.lines(file,cs,window)){
+            assertThat(Arrays.toString(bytes)+" "+cs,s.collect(toList()),is(readerLines(file,cs)));
+          }
+        }
+      }
+    }
+  }
+
+  private static String detect(byte[] bytes,Charset defaultCharset) throws IOException{
+    try(DetectingReader r = newDetectingReader(new ByteArrayInputStream(bytes),defaultCharset)){
+      return r.getCharset().name()+":"+r.readLine();
+    }
+  }
+
+  @Test
+  public void testNewDetectingReader() throws IOException{
+    String[][] files = {{"noBOM.txt","US-ASCII:aiueo"},{"withBOM.txt","UTF-8:aiueo"},
+        {"withBOM16BE.txt","UTF-16BE:aiueo"},{"noBOM16BE.txt","UTF-16BE:aiueo"},
+        {"withBOM16LE.txt","UTF-16LE:aiueo"},{"noBOM16LE.txt","UTF-16LE:aiueo"},
+        {"sjis.txt","Shift_JIS:\u3042\u3044\u3046\u3048\u304a"},{"eucjp.txt","EUC-JP:\u3042\u3044\u3046\u3048\u304a"}};
+    for(String[] f:files){
+      try(DetectingReader r = newDetectingReader(RESOURCES.resolve(f[0]),StandardCharsets.US_ASCII)){
+        assertThat(f[0],r.getCharset().name()+":"+r.readLine(),is(f[1]));
+      }
+    }
+    try(DetectingReader r = newDetectingReader(RESOURCES.resolve("empty.txt"),null)){
+      assertThat(r.getCharset(),is(Charset.defaultCharset()));
+      assertNull(r.readLine());
+    }
+    assertThat(detect(new byte[]{0,0,(byte)0xFE,(byte)0xFF,0,0,0,'a'},null),is("UTF-32BE:a"));
+    assertThat(detect(new byte[]{(byte)0xFF,(byte)0xFE,0,0,'a',0,0,0},null),is("UTF-32LE:a"));
+    assertThat(detect("\u3042\u3044 utf8".getBytes(StandardCharsets.UTF_8),StandardCharsets.ISO_8859_1),is("UTF-8:\u3042\u3044 utf8"));
+    assertThat(detect("\u3042".getBytes("ISO-2022-JP"),null),is("ISO-2022-JP:\u3042"));
+    assertThat(detect(new byte[]{(byte)0x80,(byte)0xFF},StandardCharsets.ISO_8859_1),is("ISO-8859-1:\u0080\u00FF"));
+    StringBuilder sb = new StringBuilder();
+    for(int i=0;i<5000;i++){
+      sb.append('\u3042');
+    }
+    assertThat(detect(sb.toString().getBytes(StandardCharsets.UTF_8),null),is("UTF-8:"+sb));
+    assertThat(detect(sb.toString().getBytes("EUC-JP"),null),is("EUC-JP:"+sb));
+    assertThat(detect(sb.toString().getBytes("Shift_JIS"),null),is("Shift_JIS:"+sb));
+  }
+
+  @Test
+  public void testReaderPool() throws IOException{
+    ReaderPool pool = new ReaderPool(2);
+    String[][] files = {{"empty.txt","UTF-8"},{"noBOM.txt","UTF-8"},{"withBOM.txt","UTF-8"},
+        {"withBOM16BE.txt","UTF-16BE"},{"noBOM16BE.txt","UTF-16"},{"withBOM16BE.txt","UTF-16"},
+        {"withBOM16LE.txt","UTF-16LE"},{"noBOM16LE.txt","UTF-16LE"},{"sjis.txt","Shift_JIS"},{"eucjp.txt","EUC-JP"}};
+    for(String[] f:files){
+      Path p = RESOURCES.resolve(f[0]);
+      Charset cs = Charset.forName(f[1]);
+      try(BufferedReader r = pool.newBufferedReader(p,cs)){
+        assertThat(pool.getPooledCount(),is(0));
+        assertThat(f[0]+" "+f[1],r.lines().collect(toList()),is(readerLines(p,cs)));
+      }
+      assertThat(pool.getPooledCount(),is(1));
+    }
+    StringBuilder sb = new StringBuilder("\uFEFF");
+    for(int i=0;i<3000;i++){
+      sb.append("\u3042line").append(i).append(i%3==0?"\r\n":i%3==1?"\r":"\n");
+      if(i%1000==0){
+        for(int k=0;k<10000;k++){
+          sb.append((char)('a'+k%26));
+        }
+        sb.append("\n\n");
+      }
+    }
+    Path file = tmp.newFile().toPath();
+    for(Charset cs:new Charset[]{StandardCharsets.UTF_8,StandardCharsets.UTF_16LE}){
+      Files.write(file,sb.toString().getBytes(cs));
+      try(BufferedReader r = pool.newBufferedReader(file,cs)){
+        assertThat(r.lines().collect(toList()),is(readerLines(file,cs)));
+      }
+      StringBuilder chars = new StringBuilder();
+      try(BufferedReader r = pool.newBufferedReader(file,cs);BufferedReader e = newBufferedReader(file,cs)){
+        char[] buf = new char[1000];
+        int n;
+        assertThat(r.read(),is(e.read()));
+        while((n = r.read(buf,0,buf.length)) >= 0){
+          chars.append(buf,0,n);
+        }
+        StringBuilder expected = new StringBuilder();
+        while((n = e.read(buf,0,buf.length)) >= 0){
+          expected.append(buf,0,n);
+        }
+        assertThat(chars.toString(),is(expected.toString()));
+      }
+    }
+    assertThat(pool.getPooledCount(),is(1));
+  }
+
   @Test
   public void testIteratorNameOnly(){
     {